@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Throughput of <code>GeneNameAnnotator.process</code> on sample.in, split into CASes of
+ * <code>sentencesPerCas</code> lines as the collection reader does. With a
+ * <code>cacheCapacity</code> of 0 every sentence is decoded; otherwise the measurement iterations
+ * replay sentences already in the chunk cache. The <code>backend</code> parameter selects the
+ * HMM chunker, which needs the <code>ne-en-bio-genetag.HmmChunker</code> model in the working
+ * directory, or the dictionary tagger built from sample.out.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnnotatorBenchmark {
+  @Param({ "1000" })
+  public int sentencesPerCas;
+
+  @Param({ "0", "10000" })
+  public int cacheCapacity;
+
+  @Param({ "hmm", "dictionary" })
+  public String backend;
+
+  private AnalysisEngine mAnnotator;
+
+  private JCas mJCas;
+
+  private String[] mBatches;
+
+  private int[] mBatchSizes;
+
+  private int mNext;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Corpus corpus = Corpus.load();
+    int count = (corpus.lines.size() + sentencesPerCas - 1) / sentencesPerCas;
+    mBatches = new String[count];
+    mBatchSizes = new int[count];
+    for (int b = 0; b < count; b++) {
+      StringBuilder text = new StringBuilder();
+      int end = Math.min(corpus.lines.size(), (b + 1) * sentencesPerCas);
+      for (int i = b * sentencesPerCas; i < end; i++) {
+        text.append(corpus.lines.get(i)).append('\n');
+      }
+      mBatches[b] = text.toString();
+      mBatchSizes[b] = end - b * sentencesPerCas;
+    }
+    mAnnotator = Stages.annotator(backend, cacheCapacity);
+    mJCas = Stages.newCas().getJCas();
+    mNext = 0;
+  }
+
+  @Benchmark
+  public void process(SentenceCounter counter) throws AnalysisEngineProcessException {
+    mJCas.reset();
+    mJCas.setDocumentText(mBatches[mNext]);
+    mAnnotator.process(mJCas);
+    counter.sentences += mBatchSizes[mNext];
+    mNext = (mNext + 1) % mBatches.length;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    mAnnotator.destroy();
+  }
+}
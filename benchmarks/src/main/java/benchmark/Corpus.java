@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The bundled sample corpus (<code>src/main/resources/data/sample.in</code> and
+ * <code>sample.out</code>) shared by the benchmarks.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public final class Corpus {
+  /**
+   * System property pointing at the project directory; defaults to the working directory when it
+   * holds the corpus, else to its parent (running from <code>benchmarks/</code>).
+   */
+  public static final String PROPERTY_HOME = "hw1.home";
+
+  /** Complete input lines, "&lt;ID&gt; &lt;sentence&gt;". */
+  public final List<String> lines = new ArrayList<String>();
+
+  /** Sentence IDs, parallel to {@link #sentences}. */
+  public final List<String> ids = new ArrayList<String>();
+
+  /** Sentence texts without the ID. */
+  public final List<String> sentences = new ArrayList<String>();
+
+  /** Gold mention character spans per sentence as {start0, end0, start1, end1, ...}. */
+  public final List<int[]> mentionSpans = new ArrayList<int[]>();
+
+  /** Number of gold lines in sample.out. */
+  public int goldSize;
+
+  /** Sentence IDs of the gold lines. */
+  public final List<String> goldIds = new ArrayList<String>();
+
+  /** Space-excluding begin offsets of the gold lines. */
+  public final List<Integer> goldBegins = new ArrayList<Integer>();
+
+  /** Space-excluding end offsets of the gold lines. */
+  public final List<Integer> goldEnds = new ArrayList<Integer>();
+
+  /** Mention texts of the gold lines. */
+  public final List<String> goldNames = new ArrayList<String>();
+
+  private static final String INPUT = "src/main/resources/data/sample.in";
+
+  private static final String GOLD = "src/main/resources/data/sample.out";
+
+  private Corpus() {
+  }
+
+  /**
+   * @return    the project directory
+   */
+  public static File home() {
+    String home = System.getProperty(PROPERTY_HOME);
+    if (home != null) {
+      return new File(home);
+    }
+    return new File(INPUT).exists() ? new File(".") : new File("..");
+  }
+
+  /**
+   * @param path  a path relative to the project directory
+   * @return        the file
+   */
+  public static File file(String path) {
+    return new File(home(), path);
+  }
+
+  /**
+   * @return    sample.in
+   */
+  public static File inputFile() {
+    return file(INPUT);
+  }
+
+  /**
+   * @return    sample.out
+   */
+  public static File goldFile() {
+    return file(GOLD);
+  }
+
+  /**
+   * @return    the input lines joined as one document, as the reader puts a file in a CAS
+   */
+  public String documentText() {
+    StringBuilder text = new StringBuilder();
+    for (String line : lines) {
+      text.append(line).append('\n');
+    }
+    return text.toString();
+  }
+
+  /**
+   * Load sample.in and locate the sample.out mentions in the sentences.
+   *
+   * @return    the corpus
+   * @throws IOException  if the corpus cannot be read
+   */
+  public static Corpus load() throws IOException {
+    Corpus corpus = new Corpus();
+    Map<String, Integer> index = new HashMap<String, Integer>();
+    for (String line : readLines(inputFile())) {
+      int space = line.indexOf(' ');
+      index.put(line.substring(0, space), Integer.valueOf(corpus.ids.size()));
+      corpus.lines.add(line);
+      corpus.ids.add(line.substring(0, space));
+      corpus.sentences.add(line.substring(space + 1));
+    }
+    List<List<Integer>> spans = new ArrayList<List<Integer>>();
+    for (int i = 0; i < corpus.sentences.size(); i++) {
+      spans.add(new ArrayList<Integer>());
+    }
+    for (String gold : readLines(goldFile())) {
+      corpus.goldSize++;
+      String[] fields = gold.split("\\|", 3);
+      String[] offsets = fields[1].split(" ");
+      corpus.goldIds.add(fields[0]);
+      corpus.goldBegins.add(Integer.valueOf(offsets[0]));
+      corpus.goldEnds.add(Integer.valueOf(offsets[1]));
+      corpus.goldNames.add(fields[2]);
+      Integer sentence = index.get(fields[0]);
+      if (sentence == null) {
+        continue;
+      }
+      int start = corpus.sentences.get(sentence.intValue()).indexOf(fields[2]);
+      if (start >= 0) {
+        spans.get(sentence.intValue()).add(Integer.valueOf(start));
+        spans.get(sentence.intValue()).add(Integer.valueOf(start + fields[2].length()));
+      }
+    }
+    for (List<Integer> list : spans) {
+      int[] array = new int[list.size()];
+      for (int i = 0; i < array.length; i++) {
+        array[i] = list.get(i).intValue();
+      }
+      corpus.mentionSpans.add(array);
+    }
+    return corpus;
+  }
+
+  private static List<String> readLines(File file) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+            "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.length() > 0) {
+          lines.add(line);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return lines;
+  }
+}
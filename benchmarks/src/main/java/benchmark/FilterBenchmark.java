@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of <code>GeneNameFilter.process</code> on sample.in, with one GeneName per
+ * sample.out mention. The CAS is refilled before every invocation because the filter removes
+ * annotations.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+  private Corpus mCorpus;
+
+  private AnalysisEngine mFilter;
+
+  private JCas mJCas;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mCorpus = Corpus.load();
+    mFilter = Stages.filter();
+    mJCas = Stages.newCas().getJCas();
+  }
+
+  @Setup(Level.Invocation)
+  public void fill() {
+    mJCas.reset();
+    Stages.fillWithGold(mJCas, mCorpus);
+  }
+
+  @Benchmark
+  public void process(SentenceCounter counter) throws AnalysisEngineProcessException {
+    mFilter.process(mJCas);
+    counter.sentences += mCorpus.lines.size();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    mFilter.destroy();
+  }
+}
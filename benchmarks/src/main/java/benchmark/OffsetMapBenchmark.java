@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import test.GeneNameAnnotator;
+import test.SpaceOffsetMap;
+
+/**
+ * Compares the per-chunk offset translation of the GeneNameAnnotator: the old
+ * <code>Indentation()</code> scan against the {@link SpaceOffsetMap} built once per sentence. <br>
+ * The chunks are the gold mentions of sample.out located in the sample.in sentences, so no
+ * model is needed. One invocation translates every mention of the corpus.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OffsetMapBenchmark {
+  private String[] mSentences;
+
+  private int[][] mSpans;
+
+  private GeneNameAnnotator mAnnotator;
+
+  private SpaceOffsetMap mOffsetMap;
+
+  @Setup
+  public void setUp() throws IOException {
+    Corpus corpus = Corpus.load();
+    mSentences = corpus.sentences.toArray(new String[corpus.sentences.size()]);
+    mSpans = corpus.mentionSpans.toArray(new int[corpus.mentionSpans.size()][]);
+    mAnnotator = new GeneNameAnnotator();
+    mOffsetMap = new SpaceOffsetMap();
+  }
+
+  @SuppressWarnings("deprecation")
+  @Benchmark
+  public long indentation() {
+    long sum = 0;
+    for (int s = 0; s < mSentences.length; s++) {
+      String sent = mSentences[s];
+      int[] spans = mSpans[s];
+      for (int i = 0; i < spans.length; i += 2) {
+        sum += spans[i] - mAnnotator.Indentation(spans[i], sent);
+        sum += spans[i + 1] - mAnnotator.Indentation(spans[i + 1] - 1, sent) - 1;
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long offsetMap() {
+    long sum = 0;
+    for (int s = 0; s < mSentences.length; s++) {
+      int[] spans = mSpans[s];
+      if (spans.length == 0) {
+        continue;
+      }
+      mOffsetMap.reset(mSentences[s]);
+      for (int i = 0; i < spans.length; i += 2) {
+        sum += spans[i] - mOffsetMap.spacesUpTo(spans[i]);
+        sum += spans[i + 1] - mOffsetMap.spacesUpTo(spans[i + 1] - 1) - 1;
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.CollectionReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Throughput of <code>FileSystemCollectionReader.getNext</code> reading sample.in, as one CAS
+ * per file (<code>sentencesPerCas</code> = 0) or in batches. The corpus is one file, or split
+ * into files of <code>linesPerFile</code> lines, read with <code>prefetchThreads</code> prefetch
+ * threads. One invocation is a whole open/read/close cycle: reconfiguring the reader scans the
+ * directory and starts its prefetch pool, then the whole corpus is read and the reader closed,
+ * so the cost of a cycle is measured as a whole and nothing is read ahead outside of it.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+  @Param({ "0", "1000" })
+  public int sentencesPerCas;
+
+  @Param({ "0", "15" })
+  public int linesPerFile;
+
+  @Param({ "0", "4" })
+  public int prefetchThreads;
+
+  private File mInputDirectory;
+
+  private CollectionReader mReader;
+
+  private CAS mCas;
+
+  private int mSentences;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Corpus corpus = Corpus.load();
+    mSentences = corpus.lines.size();
+    mInputDirectory = File.createTempFile("hw1-bench", "");
+    mInputDirectory.delete();
+    mInputDirectory.mkdirs();
+    if (linesPerFile == 0) {
+      copy(Corpus.inputFile(), new File(mInputDirectory, "hw1.in"));
+    } else {
+      split(corpus, linesPerFile, mInputDirectory);
+    }
+    mReader = Stages.reader(mInputDirectory, sentencesPerCas, prefetchThreads);
+    mCas = Stages.newCas();
+  }
+
+  @Benchmark
+  public void getNext(SentenceCounter counter) throws Exception {
+    mReader.reconfigure();
+    while (mReader.hasNext()) {
+      mCas.reset();
+      mReader.getNext(mCas);
+    }
+    mReader.close();
+    counter.sentences += mSentences;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    mReader.close();
+    mReader.destroy();
+    File[] files = mInputDirectory.listFiles();
+    for (int i = 0; i < files.length; i++) {
+      files[i].delete();
+    }
+    mInputDirectory.delete();
+  }
+
+  private static void split(Corpus corpus, int linesPerFile, File directory) throws IOException {
+    for (int first = 0; first < corpus.lines.size(); first += linesPerFile) {
+      File file = new File(directory, String.format("part-%05d.in", first / linesPerFile));
+      Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      try {
+        int last = Math.min(first + linesPerFile, corpus.lines.size());
+        for (int i = first; i < last; i++) {
+          out.write(corpus.lines.get(i));
+          out.write('\n');
+        }
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  private static void copy(File from, File to) throws IOException {
+    InputStream in = new FileInputStream(from);
+    try {
+      OutputStream out = new FileOutputStream(to);
+      try {
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          out.write(buffer, 0, read);
+        }
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+}
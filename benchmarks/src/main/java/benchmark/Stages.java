@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.GeneName;
+import model.Sentence;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.CasConsumer;
+import org.apache.uima.collection.CasConsumerDescription;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.resource.metadata.MetaDataObject;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.InvalidXMLException;
+import org.apache.uima.util.XMLInputSource;
+
+/**
+ * Instantiates the pipeline components from the descriptors in
+ * <code>src/main/resources/descriptors</code>, so that every benchmark measures a stage configured
+ * as in the CPE.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public final class Stages {
+  private Stages() {
+  }
+
+  /**
+   * Output file the consumers write to during a benchmark: the null device where there is one,
+   * so that repeated invocations do not fill the disk.
+   *
+   * @return    the output file
+   * @throws IOException  if no temporary file can be created
+   */
+  public static File sink() throws IOException {
+    File devNull = new File("/dev/null");
+    if (devNull.exists()) {
+      return devNull;
+    }
+    File tmp = File.createTempFile("hw1-bench", ".out");
+    tmp.deleteOnExit();
+    return tmp;
+  }
+
+  /**
+   * @return    a GeneNameAnnotator; its model is resolved against the working directory
+   */
+  public static AnalysisEngine annotator() throws Exception {
+    return UIMAFramework.produceAnalysisEngine(specifier("GeneNameAnnotator.xml"));
+  }
+
+  /**
+   * @param backend        hmm, dictionary or dictionary+hmm; the lexicon is sample.out
+   * @param cacheCapacity  number of sentences the chunk cache holds, 0 to decode every sentence
+   * @return                 a GeneNameAnnotator; its model is resolved against the working
+   *                         directory
+   */
+  public static AnalysisEngine annotator(String backend, int cacheCapacity) throws Exception {
+    AnalysisEngineDescription desc = UIMAFramework.getXMLParser()
+            .parseAnalysisEngineDescription(source("GeneNameAnnotator.xml"));
+    desc.getAnalysisEngineMetaData().getConfigurationParameterSettings().setParameterValue(
+            "Backend", backend);
+    desc.getAnalysisEngineMetaData().getConfigurationParameterSettings().setParameterValue(
+            "LexiconFile", Corpus.goldFile().getPath());
+    desc.getAnalysisEngineMetaData().getConfigurationParameterSettings().setParameterValue(
+            "CacheCapacity", Integer.valueOf(cacheCapacity));
+    return UIMAFramework.produceAnalysisEngine(desc);
+  }
+
+  /**
+   * @return    a GeneNameFilter
+   */
+  public static AnalysisEngine filter() throws Exception {
+    return UIMAFramework.produceAnalysisEngine(specifier("GeneNameFilter.xml"));
+  }
+
+  /**
+   * @param outputFile  file the annotations are written to
+   * @return              an AnnotationWriter
+   */
+  public static CasConsumer writer(File outputFile) throws Exception {
+    CasConsumerDescription desc = consumer("AnnotationWriter.xml");
+    desc.getCasConsumerMetaData().getConfigurationParameterSettings().setParameterValue(
+            "outputFile", outputFile.getPath());
+    return UIMAFramework.produceCasConsumer(desc);
+  }
+
+  /**
+   * @param outputFile  file the evaluation report is written to
+   * @return              an AnnotationEvaluator scoring against sample.out
+   */
+  public static CasConsumer evaluator(File outputFile) throws Exception {
+    return evaluator(outputFile, false);
+  }
+
+  /**
+   * @param outputFile     file the evaluation report is written to
+   * @param mapSampleFile  memory-map sample.out instead of reading it on the heap
+   * @return                 an AnnotationEvaluator scoring against sample.out
+   */
+  public static CasConsumer evaluator(File outputFile, boolean mapSampleFile) throws Exception {
+    CasConsumerDescription desc = consumer("AnnotationEvaluator.xml");
+    desc.getCasConsumerMetaData().getConfigurationParameterSettings().setParameterValue(
+            "MapSampleFile", Boolean.valueOf(mapSampleFile));
+    desc.getCasConsumerMetaData().getConfigurationParameterSettings().setParameterValue(
+            "outputFile", outputFile.getPath());
+    desc.getCasConsumerMetaData().getConfigurationParameterSettings().setParameterValue(
+            "SampleFile", Corpus.goldFile().getPath());
+    return UIMAFramework.produceCasConsumer(desc);
+  }
+
+  /**
+   * @param inputDirectory   directory holding the input file
+   * @param sentencesPerCas  batch size, 0 for one CAS per file
+   * @return                   a FileSystemCollectionReader
+   */
+  public static CollectionReader reader(File inputDirectory, int sentencesPerCas)
+          throws Exception {
+    return reader(inputDirectory, sentencesPerCas, 0);
+  }
+
+  /**
+   * @param inputDirectory   directory holding the *.in input files
+   * @param sentencesPerCas  batch size, 0 for one CAS per file
+   * @param prefetchThreads  number of prefetch threads, 0 to read on the calling thread
+   * @return                   a FileSystemCollectionReader
+   */
+  public static CollectionReader reader(File inputDirectory, int sentencesPerCas,
+          int prefetchThreads) throws Exception {
+    CollectionReaderDescription desc = UIMAFramework.getXMLParser()
+            .parseCollectionReaderDescription(source("FileSystemCollectionReader.xml"));
+    desc.getCollectionReaderMetaData().getConfigurationParameterSettings().setParameterValue(
+            "FilePatterns", new String[] { "*.in" });
+    desc.getCollectionReaderMetaData().getConfigurationParameterSettings().setParameterValue(
+            "PrefetchThreads", Integer.valueOf(prefetchThreads));
+    desc.getCollectionReaderMetaData().getConfigurationParameterSettings().setParameterValue(
+            "InputDirectory", inputDirectory.getPath());
+    desc.getCollectionReaderMetaData().getConfigurationParameterSettings().setParameterValue(
+            "SentencesPerCas", Integer.valueOf(sentencesPerCas));
+    return UIMAFramework.produceCollectionReader(desc);
+  }
+
+  /**
+   * Create a CAS with the merged type system of all pipeline components.
+   *
+   * @return    an empty CAS
+   */
+  public static CAS newCas() throws Exception {
+    List<MetaDataObject> descriptions = new ArrayList<MetaDataObject>();
+    descriptions.add(specifier("GeneNameAnnotator.xml"));
+    descriptions.add(specifier("GeneNameFilter.xml"));
+    descriptions.add(consumer("AnnotationWriter.xml"));
+    descriptions.add(consumer("AnnotationEvaluator.xml"));
+    descriptions.add(UIMAFramework.getXMLParser().parseCollectionReaderDescription(
+            source("FileSystemCollectionReader.xml")));
+    return CasCreationUtils.createCas(descriptions);
+  }
+
+  /**
+   * Put the corpus in the CAS with one Sentence per line and one GeneName per located gold
+   * mention, as the annotator would produce them, so the downstream stages can be measured
+   * without the model.
+   *
+   * @param jcas    the CAS to fill
+   * @param corpus  the corpus
+   */
+  public static void fillWithGold(JCas jcas, Corpus corpus) {
+    jcas.setDocumentText(corpus.documentText());
+    int lineStart = 0;
+    for (int s = 0; s < corpus.lines.size(); s++) {
+      int sentBegin = lineStart + corpus.ids.get(s).length() + 1;
+      int sentEnd = lineStart + corpus.lines.get(s).length();
+      Sentence sentence = new Sentence(jcas, sentBegin, sentEnd);
+      sentence.setID(corpus.ids.get(s));
+      sentence.addToIndexes();
+      int[] spans = corpus.mentionSpans.get(s);
+      for (int i = 0; i < spans.length; i += 2) {
+        GeneName annotation = new GeneName(jcas, sentBegin + spans[i], sentBegin + spans[i + 1]);
+        annotation.setSentence(sentence);
+        annotation.setConfidence(1.0);
+        annotation.addToIndexes();
+      }
+      lineStart = sentEnd + 1;
+    }
+  }
+
+  private static ResourceSpecifier specifier(String descriptor) throws IOException,
+          InvalidXMLException {
+    return UIMAFramework.getXMLParser().parseResourceSpecifier(source(descriptor));
+  }
+
+  private static CasConsumerDescription consumer(String descriptor) throws IOException,
+          InvalidXMLException {
+    return UIMAFramework.getXMLParser().parseCasConsumerDescription(source(descriptor));
+  }
+
+  private static XMLInputSource source(String descriptor) throws IOException {
+    return new XMLInputSource(Corpus.file("src/main/resources/descriptors/" + descriptor));
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.uima.util.ProcessTrace;
+import org.apache.uima.util.ProcessTraceEvent;
+
+/**
+ * Machine-readable summary of a CPE run. <br>
+ * The events of the CPE's {@link ProcessTrace} are totalled per component and event type, with
+ * both the total duration and the duration excluding sub-events. The report is written as JSON,
+ * one file per run, or as CSV, in which case rows are appended to the file so that successive
+ * runs can be compared; the format is chosen by the extension of the report file. Rows are only
+ * appended under the current header: a CSV file with other columns is rejected. <br>
+ * Settings of the run, such as the thread count and CAS pool size chosen by autotuning, are
+ * recorded with {@link #setting(String, Object)}: as an object in JSON, and as one
+ * <code>name=value</code> list per row in the last CSV column.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class PerformanceReport {
+  private static final String CSV_HEADER = "run,documents,characters,initializationMs,"
+          + "processingMs,component,type,count,durationMs,ownDurationMs,settings";
+
+  /**
+   * Totals of one component and event type.
+   */
+  private static class Totals {
+    final String component;
+
+    final String type;
+
+    long count;
+
+    long duration;
+
+    long ownDuration;
+
+    Totals(String component, String type) {
+      this.component = component;
+      this.type = type;
+    }
+  }
+
+  private final String mRun;
+
+  private final long mDocuments;
+
+  private final long mCharacters;
+
+  private final long mInitTime;
+
+  private final long mProcessingTime;
+
+  private final Map<String, Totals> mTotals = new LinkedHashMap<String, Totals>();
+
+  private final Map<String, Object> mSettings = new LinkedHashMap<String, Object>();
+
+  /**
+   * Total the events of a run.
+   *
+   * @param trace           the performance report of the CPE
+   * @param documents       number of CASes processed
+   * @param characters      number of characters processed
+   * @param initTime        initialization time in ms
+   * @param processingTime  processing time in ms
+   */
+  public PerformanceReport(ProcessTrace trace, long documents, long characters, long initTime,
+          long processingTime) {
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    mRun = format.format(new Date());
+    mDocuments = documents;
+    mCharacters = characters;
+    mInitTime = initTime;
+    mProcessingTime = processingTime;
+    add(trace.getEvents());
+  }
+
+  private void add(List<ProcessTraceEvent> events) {
+    for (ProcessTraceEvent event : events) {
+      String key = event.getComponentName() + '\u0000' + event.getType();
+      Totals totals = mTotals.get(key);
+      if (totals == null) {
+        totals = new Totals(event.getComponentName(), event.getType());
+        mTotals.put(key, totals);
+      }
+      totals.count++;
+      totals.duration += event.getDuration();
+      totals.ownDuration += event.getDurationExcludingSubEvents();
+      add(event.getSubEvents());
+    }
+  }
+
+  /**
+   * Record a setting of the run.
+   *
+   * @param name   the setting
+   * @param value  its value; numbers and booleans are written unquoted in JSON
+   */
+  public void setting(String name, Object value) {
+    mSettings.put(name, value);
+  }
+
+  /**
+   * @return    documents processed per second of processing time
+   */
+  public double getDocumentsPerSecond() {
+    return perSecond(mDocuments);
+  }
+
+  /**
+   * @return    characters processed per second of processing time
+   */
+  public double getCharactersPerSecond() {
+    return perSecond(mCharacters);
+  }
+
+  private double perSecond(long count) {
+    return (mProcessingTime <= 0) ? 0.0 : count * 1000.0 / mProcessingTime;
+  }
+
+  /**
+   * Write the report, as CSV if the file name ends with ".csv" and as JSON otherwise.
+   *
+   * @param file  the report file
+   * @throws IOException  if the report cannot be written, or the CSV file has other columns
+   */
+  public void write(File file) throws IOException {
+    if (file.getName().toLowerCase().endsWith(".csv")) {
+      writeCsv(file);
+    } else {
+      writeJson(file);
+    }
+  }
+
+  private void writeJson(File file) throws IOException {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"run\": ").append(quote(mRun)).append(",\n");
+    json.append("  \"documents\": ").append(mDocuments).append(",\n");
+    json.append("  \"characters\": ").append(mCharacters).append(",\n");
+    json.append("  \"initializationMs\": ").append(mInitTime).append(",\n");
+    json.append("  \"processingMs\": ").append(mProcessingTime).append(",\n");
+    json.append("  \"documentsPerSecond\": ").append(getDocumentsPerSecond()).append(",\n");
+    json.append("  \"charactersPerSecond\": ").append(getCharactersPerSecond()).append(",\n");
+    json.append("  \"settings\": {");
+    String separator = "";
+    for (Map.Entry<String, Object> e : mSettings.entrySet()) {
+      json.append(separator).append(quote(e.getKey())).append(": ");
+      Object value = e.getValue();
+      if (value instanceof Number || value instanceof Boolean) {
+        json.append(value);
+      } else {
+        json.append(quote(value == null ? null : value.toString()));
+      }
+      separator = ", ";
+    }
+    json.append("},\n");
+    json.append("  \"components\": [");
+    separator = "\n";
+    for (Totals totals : mTotals.values()) {
+      json.append(separator);
+      json.append("    {\"component\": ").append(quote(totals.component));
+      json.append(", \"type\": ").append(quote(totals.type));
+      json.append(", \"count\": ").append(totals.count);
+      json.append(", \"durationMs\": ").append(totals.duration);
+      json.append(", \"ownDurationMs\": ").append(totals.ownDuration).append('}');
+      separator = ",\n";
+    }
+    json.append("\n  ]\n}\n");
+    write(file, json.toString(), false);
+  }
+
+  private void writeCsv(File file) throws IOException {
+    StringBuilder csv = new StringBuilder();
+    if (!file.exists() || file.length() == 0) {
+      csv.append(CSV_HEADER).append('\n');
+    } else {
+      String header = firstLine(file);
+      if (!CSV_HEADER.equals(header)) {
+        throw new IOException("Cannot append to " + file + ": its columns are " + header
+                + " instead of " + CSV_HEADER + "; report to a new file");
+      }
+    }
+    String run = mRun + ',' + mDocuments + ',' + mCharacters + ',' + mInitTime + ','
+            + mProcessingTime + ',';
+    StringBuilder settings = new StringBuilder();
+    for (Map.Entry<String, Object> e : mSettings.entrySet()) {
+      if (settings.length() > 0) {
+        settings.append(';');
+      }
+      settings.append(e.getKey()).append('=').append(e.getValue());
+    }
+    String settingsField = csvField(settings.toString());
+    for (Totals totals : mTotals.values()) {
+      csv.append(run).append(csvField(totals.component)).append(',')
+              .append(csvField(totals.type)).append(',').append(totals.count).append(',')
+              .append(totals.duration).append(',').append(totals.ownDuration).append(',')
+              .append(settingsField).append('\n');
+    }
+    write(file, csv.toString(), true);
+  }
+
+  private static String firstLine(File file) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+            "UTF-8"));
+    try {
+      return reader.readLine();
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static void write(File file, String text, boolean append) throws IOException {
+    if (file.getParentFile() != null && !file.getParentFile().exists()) {
+      file.getParentFile().mkdirs();
+    }
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file, append), "UTF-8");
+    try {
+      writer.write(text);
+    } finally {
+      writer.close();
+    }
+  }
+
+  private static String quote(String value) {
+    if (value == null) {
+      return "null";
+    }
+    StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        quoted.append('\\').append(c);
+      } else if (c < 0x20) {
+        quoted.append(String.format("\\u%04x", Integer.valueOf(c)));
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  private static String csvField(String value) {
+    if (value == null) {
+      return "";
+    }
+    if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+}
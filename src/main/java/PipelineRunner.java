@@ -0,0 +1,545 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.CasConsumer;
+import org.apache.uima.collection.CasConsumerDescription;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.resource.ResourceManager;
+import org.apache.uima.resource.metadata.ConfigurationParameterSettings;
+import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.XMLInputSource;
+import org.apache.uima.util.impl.ProcessTrace_impl;
+
+import test.AnnotationEvaluator;
+import test.AnnotationWriter;
+import test.CasTrace;
+import test.Downstream;
+import test.GeneNameAnnotator;
+import test.GeneNameFilter;
+import test.StageMetrics;
+import test.StagePool;
+
+/**
+ * Runs the gene name pipeline without the CPM, on a {@link StagePool} per stage. <br>
+ * The FileSystemCollectionReader fills CASes taken from a pool of <code>-casPool</code> CASes on
+ * the main thread, and hands them to the Gene Name Annotator stage, followed by the Gene Name
+ * Filter, the Annotation Writer and, with -evaluate, the Annotation Evaluator; the last stage
+ * returns the CASes to the pool. Every stage has its own worker threads, each with its own
+ * instance of the component, and its own bounded inboxes, so a slow stage is scaled on its own
+ * and holds back the stages feeding it instead of letting CASes pile up: the reader waits for a
+ * free CAS, and the heap never holds more than the pool. Idle workers steal CASes queued for
+ * their busy siblings. All instances share one resource manager, so the chunker model is loaded
+ * once. <br>
+ * Options:
+ * <ul>
+ * <li> -descriptors &lt;dir&gt; : directory of the component descriptors,
+ * src/main/resources/descriptors by default.</li>
+ * <li> -input &lt;dir&gt; : InputDirectory of the collection reader.</li>
+ * <li> -output &lt;file&gt; : outputFile of the Annotation Writer.</li>
+ * <li> -evaluate : add the Annotation Evaluator, with the settings of its descriptor.</li>
+ * <li> -annotators &lt;n&gt; : workers of the annotator stage, the number of processors by
+ * default.</li>
+ * <li> -filters &lt;n&gt; : workers of the filter stage, 1 by default.</li>
+ * <li> -consumers &lt;n&gt; : workers of each consumer stage, 1 by default.</li>
+ * <li> -queue &lt;n&gt; : CASes waiting for each worker, 2 by default.</li>
+ * <li> -batchSize &lt;n&gt; : call batchProcessComplete of every consumer instance after each n
+ * CASes it processed, as the CPM does at its checkpoints, so the outputs are flushed and the
+ * evaluator reports partial results; 0, the default, ends no batch before the collection.</li>
+ * <li> -casPool &lt;n&gt; : number of CASes, by default enough to fill every worker and
+ * inbox.</li>
+ * <li> -virtual : instead of the stage pools, run every CAS through the whole pipeline on a
+ * virtual thread of its own, borrowing an idle instance of each component in turn. The CAS pool
+ * is then the number of documents in flight, and can be raised far beyond the number of
+ * threads the stage pools could afford, which pays when the reader and the consumers wait on
+ * the disk. The annotator still runs on <code>-annotators</code> platform threads.</li>
+ * <li> -metrics &lt;seconds&gt; : print a line of {@link StageMetrics} per stage at this period;
+ * the counters <code>stalls</code> and <code>steals</code> show the backpressure and the work
+ * stealing of each stage.</li>
+ * <li> -trace &lt;file&gt; : write a {@link CasTrace} of the run.</li>
+ * </ul>
+ * The exit code is 0 when the whole collection was processed without errors and 1 otherwise. A
+ * failing component stops the run; the components are destroyed all the same, so that the
+ * outputs written so far are complete, but not notified of the end of the collection.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class PipelineRunner {
+  private File mDescriptors = new File("src/main/resources/descriptors");
+
+  private String mInput;
+
+  private String mOutput;
+
+  private boolean mEvaluate;
+
+  private boolean mVirtual;
+
+  private int mAnnotators = Runtime.getRuntime().availableProcessors();
+
+  private int mFilters = 1;
+
+  private int mConsumers = 1;
+
+  private int mQueue = 2;
+
+  private int mBatchSize;
+
+  private int mCasPool;
+
+  private int mMetricsPeriod;
+
+  private File mTraceFile;
+
+  private final AtomicReference<Throwable> mFailure = new AtomicReference<Throwable>();
+
+  private final ResourceManager mResourceManager = UIMAFramework.newDefaultResourceManager();
+
+  /**
+   * Components to notify at the end of the collection, in pipeline order.
+   */
+  private final List<AnalysisEngine> mEngines = new ArrayList<AnalysisEngine>();
+
+  private final List<CasConsumer> mCasConsumers = new ArrayList<CasConsumer>();
+
+  /**
+   * Parse the command line.
+   *
+   * @return true if the options are valid
+   */
+  private boolean applyOptions(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      String option = args[i];
+      if ("-evaluate".equals(option)) {
+        mEvaluate = true;
+        continue;
+      }
+      if ("-virtual".equals(option)) {
+        mVirtual = true;
+        continue;
+      }
+      if (i + 1 == args.length) {
+        return false;
+      }
+      String value = args[++i];
+      if ("-descriptors".equals(option)) {
+        mDescriptors = new File(value);
+      } else if ("-input".equals(option)) {
+        mInput = value;
+      } else if ("-output".equals(option)) {
+        mOutput = value;
+      } else if ("-annotators".equals(option)) {
+        mAnnotators = Integer.parseInt(value);
+      } else if ("-filters".equals(option)) {
+        mFilters = Integer.parseInt(value);
+      } else if ("-consumers".equals(option)) {
+        mConsumers = Integer.parseInt(value);
+      } else if ("-queue".equals(option)) {
+        mQueue = Integer.parseInt(value);
+      } else if ("-batchSize".equals(option)) {
+        mBatchSize = Integer.parseInt(value);
+      } else if ("-casPool".equals(option)) {
+        mCasPool = Integer.parseInt(value);
+      } else if ("-metrics".equals(option)) {
+        mMetricsPeriod = Integer.parseInt(value);
+      } else if ("-trace".equals(option)) {
+        mTraceFile = new File(value);
+      } else {
+        return false;
+      }
+    }
+    return mAnnotators > 0 && mFilters > 0 && mConsumers > 0 && mQueue > 0 && mBatchSize >= 0
+            && mCasPool >= 0 && mMetricsPeriod >= 0;
+  }
+
+  private static void printUsageMessage() {
+    System.out.println(" Arguments to the program are any of\n"
+            + "  -descriptors <dir>  directory of the component descriptors\n"
+            + "  -input <dir>        input directory of the collection reader\n"
+            + "  -output <file>      output file of the Annotation Writer\n"
+            + "  -evaluate           add the Annotation Evaluator\n"
+            + "  -virtual            run every CAS on a virtual thread instead of stage pools\n"
+            + "  -annotators <n>     workers of the annotator stage\n"
+            + "  -filters <n>        workers of the filter stage\n"
+            + "  -consumers <n>      workers of each consumer stage\n"
+            + "  -queue <n>          CASes waiting for each worker\n"
+            + "  -batchSize <n>      end a consumer batch every n CASes per instance\n"
+            + "  -casPool <n>        number of CASes\n"
+            + "  -metrics <s>        log per-stage latency and counters every s seconds\n"
+            + "  -trace <file>       trace the time of every CAS in every stage to file");
+  }
+
+  /**
+   * Run the pipeline over the whole collection.
+   *
+   * @return the number of CASes processed
+   * @throws Throwable
+   *           the failure of the first component that failed
+   */
+  private long run() throws Throwable {
+    CollectionReaderDescription readerDesc = UIMAFramework.getXMLParser()
+            .parseCollectionReaderDescription(source("FileSystemCollectionReader.xml"));
+    if (mInput != null) {
+      readerDesc.getCollectionReaderMetaData().getConfigurationParameterSettings()
+              .setParameterValue("InputDirectory", mInput);
+    }
+    CollectionReader reader = UIMAFramework.produceCollectionReader(readerDesc,
+            mResourceManager, null);
+    try {
+      return runCollection(reader);
+    } finally {
+      StageMetrics.stopLogging();
+      teardown(reader);
+    }
+  }
+
+  /**
+   * Create the components, run them over the collection and, if no component failed, notify
+   * them of the end of the collection.
+   */
+  private long runCollection(CollectionReader reader) throws Throwable {
+    List<ProcessingResourceMetaData> metaData = new ArrayList<ProcessingResourceMetaData>();
+    metaData.add(reader.getProcessingResourceMetaData());
+
+    // component instances of every stage, in pipeline order
+    List<String> names = new ArrayList<String>();
+    List<List<StagePool.Handler<CAS>>> handlers = new ArrayList<List<StagePool.Handler<CAS>>>();
+    names.add(GeneNameAnnotator.STAGE);
+    handlers.add(engineHandlers("GeneNameAnnotator.xml", mAnnotators, metaData));
+    names.add(GeneNameFilter.STAGE);
+    handlers.add(engineHandlers("GeneNameFilter.xml", mFilters, metaData));
+    names.add(AnnotationWriter.STAGE);
+    handlers.add(consumerHandlers("AnnotationWriter.xml", "outputFile", mOutput, metaData));
+    if (mEvaluate) {
+      names.add(AnnotationEvaluator.STAGE);
+      handlers.add(consumerHandlers("AnnotationEvaluator.xml", null, null, metaData));
+    }
+
+    int workers = 0;
+    for (List<StagePool.Handler<CAS>> stageHandlers : handlers) {
+      workers += stageHandlers.size();
+    }
+    int poolSize = (mCasPool > 0) ? mCasPool : workers * (mQueue + 1) + 1;
+    final BlockingQueue<CAS> freeCases = new ArrayBlockingQueue<CAS>(poolSize);
+    final AtomicLong documents = new AtomicLong();
+    final AtomicLong characters = new AtomicLong();
+    final CountDownLatch done = new CountDownLatch(1);
+    Downstream<CAS> sink = new Downstream<CAS>() {
+      public void put(CAS cas) {
+        documents.incrementAndGet();
+        String text = cas.getDocumentText();
+        if (text != null) {
+          characters.addAndGet(text.length());
+        }
+        cas.reset();
+        freeCases.add(cas);
+      }
+
+      public void finishInput() {
+        done.countDown();
+      }
+    };
+    for (int i = 0; i < poolSize; i++) {
+      freeCases.add(CasCreationUtils.createCas(metaData));
+    }
+
+    System.out.println("Running pipeline" + (mVirtual ? " on virtual threads: " : ": ") + poolSize
+            + " CASes, " + mAnnotators + " annotators, " + mFilters + " filters, " + mConsumers
+            + " workers per consumer");
+    if (mMetricsPeriod > 0) {
+      StageMetrics.startLogging(mMetricsPeriod * 1000L, System.out);
+    }
+    if (mTraceFile != null) {
+      CasTrace.open(mTraceFile);
+    }
+    if (mVirtual) {
+      runVirtual(reader, names, handlers, freeCases, sink);
+    } else {
+      runStages(reader, names, handlers, freeCases, sink);
+    }
+    done.await();
+    StageMetrics.stopLogging();
+    CasTrace.close();
+    if (mFailure.get() != null) {
+      throw mFailure.get();
+    }
+
+    for (AnalysisEngine engine : mEngines) {
+      engine.collectionProcessComplete();
+    }
+    for (CasConsumer consumer : mCasConsumers) {
+      consumer.collectionProcessComplete(new ProcessTrace_impl());
+    }
+    System.out.println("Completed " + documents.get() + " documents; " + characters.get()
+            + " characters");
+    return documents.get();
+  }
+
+  /**
+   * Close the reader and destroy every component created, also after a failure, so that the
+   * shared outputs are written out and closed and the shared indexes and stores released. The
+   * annotation store is only saved by collectionProcessComplete, that is after a complete run.
+   */
+  private void teardown(CollectionReader reader) {
+    try {
+      CasTrace.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    try {
+      reader.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    for (AnalysisEngine engine : mEngines) {
+      engine.destroy();
+    }
+    for (CasConsumer consumer : mCasConsumers) {
+      consumer.destroy();
+    }
+    reader.destroy();
+  }
+
+  /**
+   * Run every stage on its {@link StagePool}, the reader feeding the first one.
+   */
+  private void runStages(CollectionReader reader, List<String> names,
+          List<List<StagePool.Handler<CAS>>> handlers, BlockingQueue<CAS> freeCases,
+          Downstream<CAS> sink) throws Exception {
+    // build the stages from the last one, each knowing the next
+    List<StagePool<CAS>> stages = new ArrayList<StagePool<CAS>>();
+    Downstream<CAS> next = sink;
+    for (int s = handlers.size() - 1; s >= 0; s--) {
+      StagePool<CAS> stage = new StagePool<CAS>(names.get(s), handlers.get(s).size(), mQueue,
+              next, mFailure);
+      stages.add(0, stage);
+      next = stage;
+    }
+    for (int s = 0; s < stages.size(); s++) {
+      stages.get(s).start(handlers.get(s));
+    }
+    StagePool<CAS> first = stages.get(0);
+    try {
+      while (mFailure.get() == null && reader.hasNext()) {
+        CAS cas = freeCases.poll(100, TimeUnit.MILLISECONDS);
+        if (cas == null) {
+          continue;
+        }
+        reader.getNext(cas);
+        first.put(cas);
+      }
+    } catch (Throwable e) {
+      mFailure.compareAndSet(null, e);
+    } finally {
+      first.finishInput();
+    }
+    for (int s = 0; s < stages.size(); s++) {
+      stages.get(s).join();
+    }
+  }
+
+  /**
+   * Drive every CAS through all the stages on a virtual thread of its own. A stage's instances
+   * are lent to one CAS at a time; a CAS finding none idle waits for one, counted as a stall of
+   * the stage. The annotator, which only computes, runs on a fixed pool of platform threads, one
+   * per instance, so it never holds the carriers of the virtual threads blocked on the disk.
+   */
+  private void runVirtual(CollectionReader reader, List<String> names,
+          List<List<StagePool.Handler<CAS>>> handlers, BlockingQueue<CAS> freeCases,
+          final Downstream<CAS> sink) throws Exception {
+    final List<BlockingQueue<StagePool.Handler<CAS>>> idle =
+            new ArrayList<BlockingQueue<StagePool.Handler<CAS>>>();
+    final List<AtomicLong> stalls = new ArrayList<AtomicLong>();
+    for (int s = 0; s < handlers.size(); s++) {
+      idle.add(new ArrayBlockingQueue<StagePool.Handler<CAS>>(handlers.get(s).size(), false,
+              handlers.get(s)));
+      stalls.add(StageMetrics.get(names.get(s)).counter("stalls"));
+    }
+    final ExecutorService chunkers = Executors.newFixedThreadPool(mAnnotators);
+    ExecutorService cases = Executors.newVirtualThreadPerTaskExecutor();
+    try {
+      while (mFailure.get() == null && reader.hasNext()) {
+        CAS cas = freeCases.poll(100, TimeUnit.MILLISECONDS);
+        if (cas == null) {
+          continue;
+        }
+        reader.getNext(cas);
+        final CAS next = cas;
+        cases.execute(new Runnable() {
+          public void run() {
+            try {
+              for (int s = 0; s < idle.size() && mFailure.get() == null; s++) {
+                process(next, idle.get(s), stalls.get(s), (s == 0) ? chunkers : null);
+              }
+              if (mFailure.get() == null) {
+                sink.put(next);
+              }
+            } catch (Throwable e) {
+              mFailure.compareAndSet(null, e);
+            }
+          }
+        });
+      }
+    } catch (Throwable e) {
+      mFailure.compareAndSet(null, e);
+    } finally {
+      // waits for the CASes in flight
+      cases.close();
+      chunkers.shutdown();
+      sink.finishInput();
+    }
+  }
+
+  /**
+   * Process a CAS with an idle instance of a stage, on the calling thread or on an executor.
+   */
+  private static void process(final CAS cas, BlockingQueue<StagePool.Handler<CAS>> idle,
+          AtomicLong stalls, ExecutorService executor) throws Exception {
+    StagePool.Handler<CAS> handler = idle.poll();
+    if (handler == null) {
+      stalls.incrementAndGet();
+      handler = idle.take();
+    }
+    try {
+      if (executor == null) {
+        handler.handle(cas);
+        return;
+      }
+      final StagePool.Handler<CAS> lent = handler;
+      try {
+        executor.submit(new Callable<Void>() {
+          public Void call() throws Exception {
+            lent.handle(cas);
+            return null;
+          }
+        }).get();
+      } catch (ExecutionException e) {
+        throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+      }
+    } finally {
+      idle.add(handler);
+    }
+  }
+
+  /**
+   * Create the instances of an analysis engine and their handlers.
+   */
+  private List<StagePool.Handler<CAS>> engineHandlers(String descriptor, int instances,
+          List<ProcessingResourceMetaData> metaData) throws Exception {
+    List<StagePool.Handler<CAS>> handlers = new ArrayList<StagePool.Handler<CAS>>();
+    for (int i = 0; i < instances; i++) {
+      AnalysisEngineDescription desc = UIMAFramework.getXMLParser()
+              .parseAnalysisEngineDescription(source(descriptor));
+      final AnalysisEngine engine = UIMAFramework.produceAnalysisEngine(desc, mResourceManager,
+              null);
+      mEngines.add(engine);
+      metaData.add(engine.getProcessingResourceMetaData());
+      handlers.add(new StagePool.Handler<CAS>() {
+        public void handle(CAS cas) throws Exception {
+          engine.process(cas);
+        }
+      });
+    }
+    return handlers;
+  }
+
+  /**
+   * Create the instances of a CAS consumer, overriding one parameter if the value is not null,
+   * and their handlers.
+   */
+  private List<StagePool.Handler<CAS>> consumerHandlers(String descriptor, String parameter,
+          String value, List<ProcessingResourceMetaData> metaData) throws Exception {
+    List<StagePool.Handler<CAS>> handlers = new ArrayList<StagePool.Handler<CAS>>();
+    for (int i = 0; i < mConsumers; i++) {
+      CasConsumerDescription desc = UIMAFramework.getXMLParser().parseCasConsumerDescription(
+              source(descriptor));
+      if (parameter != null && value != null) {
+        ConfigurationParameterSettings settings = desc.getCasConsumerMetaData()
+                .getConfigurationParameterSettings();
+        settings.setParameterValue(parameter, value);
+      }
+      final CasConsumer consumer = UIMAFramework.produceCasConsumer(desc, mResourceManager,
+              null);
+      mCasConsumers.add(consumer);
+      metaData.add(consumer.getProcessingResourceMetaData());
+      handlers.add(new StagePool.Handler<CAS>() {
+        private int mProcessed;
+
+        public void handle(CAS cas) throws Exception {
+          consumer.processCas(cas);
+          if (mBatchSize > 0 && ++mProcessed % mBatchSize == 0) {
+            consumer.batchProcessComplete(new ProcessTrace_impl());
+          }
+        }
+      });
+    }
+    return handlers;
+  }
+
+  private XMLInputSource source(String descriptor) throws Exception {
+    return new XMLInputSource(new File(mDescriptors, descriptor));
+  }
+
+  /**
+   * main class.
+   * 
+   * @param args
+   *          Command line arguments - see class description
+   */
+  public static void main(String[] args) throws Throwable {
+    PipelineRunner runner = new PipelineRunner();
+    if (!runner.applyOptions(args)) {
+      printUsageMessage();
+      System.exit(1);
+    }
+    long start = System.currentTimeMillis();
+    try {
+      runner.run();
+    } catch (Throwable e) {
+      e.printStackTrace();
+      System.exit(1);
+    }
+    System.out.println("Total Time Elapsed: " + (System.currentTimeMillis() - start) + " ms");
+    for (StageMetrics stage : StageMetrics.all()) {
+      System.out.println(stage.summaryLine());
+    }
+    System.exit(0);
+  }
+}
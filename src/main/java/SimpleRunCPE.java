@@ -18,30 +18,145 @@
  */
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.collection.CollectionProcessingEngine;
 import org.apache.uima.collection.EntityProcessStatus;
 import org.apache.uima.collection.StatusCallbackListener;
+import org.apache.uima.collection.impl.metadata.cpe.CpeDescriptorFactory;
+import org.apache.uima.collection.metadata.CasProcessorConfigurationParameterSettings;
+import org.apache.uima.collection.metadata.CpeCasProcessor;
+import org.apache.uima.collection.metadata.CpeCollectionReaderIterator;
 import org.apache.uima.collection.metadata.CpeDescription;
+import org.apache.uima.collection.metadata.CpeDescriptorException;
 import org.apache.uima.util.XMLInputSource;
 
+import test.CasTrace;
+import test.StageMetrics;
+
 /**
  * Main Class that runs a Collection Processing Engine (CPE). This class reads a CPE Descriptor as a
  * command-line argument and instantiates the CPE. It also registers a callback listener with the
  * CPE, which will print progress and statistics to System.out.
+ * <br>
+ * Options following the descriptor override its settings:
+ * <ul>
+ * <li> -batch : run without waiting for "abort" on the console; the program exits when the
+ * collection is processed.</li>
+ * <li> -input &lt;dir&gt; : InputDirectory of the collection reader.</li>
+ * <li> -output &lt;file&gt; : outputFile of the Annotation Writer.</li>
+ * <li> -threads &lt;n&gt; : number of processing units.</li>
+ * <li> -casPool &lt;n&gt; : number of CASes in the pool.</li>
+ * <li> -incremental &lt;file&gt; : AnnotationCacheFile of the Gene Name Annotator; sentences
+ * unchanged since the last run with the same file are not decoded again.</li>
+ * <li> -report &lt;file&gt; : write a {@link PerformanceReport}, as CSV if the file ends with
+ * ".csv" and as JSON otherwise.</li>
+ * <li> -metrics &lt;seconds&gt; : print a line of {@link StageMetrics} per stage at this period,
+ * and a summary line per stage at the end. The metrics are also registered as MBeans in the
+ * "hw1" domain, for a JMX console.</li>
+ * <li> -trace &lt;file&gt; : write a {@link CasTrace} of the time every CAS spends in every
+ * stage; {@link TraceSummary} lists the slowest documents and stages.</li>
+ * <li> -autotune &lt;n&gt; : before the run, process the first n CASes of the input with several
+ * thread counts and CAS pool sizes, within the available processors and heap, and run with the
+ * fastest. The chosen settings and the measured throughputs are recorded in the report.</li>
+ * </ul>
+ * The exit code is 0 when the whole collection was processed without errors and 1 otherwise.
+ * <br>
+ * ReplayCpeDescriptor.xml runs the filter and the consumers on the CASes saved by the Binary CAS
+ * Writer of an earlier run, without annotating again; -input then gives the segment directory.
  * 
  * 
  */
 public class SimpleRunCPE extends Thread {
+  /**
+   * Name of the CAS processor whose output file -output overrides.
+   */
+  private static final String WRITER_NAME = "Annotation Writer";
+
+  /**
+   * Name of the CAS processor whose annotation store -incremental sets.
+   */
+  private static final String ANNOTATOR_NAME = "Gene Name Annotator";
+
+  /**
+   * Names of the consumers whose output calibration runs redirect, and the redirected parameter.
+   */
+  private static final String[][] CALIBRATION_OUTPUTS = {
+      { WRITER_NAME, "outputFile", "annotations.out" },
+      { "Annotation Evaluator", "outputFile", "evaluation.out" },
+      { "Binary CAS Writer", "OutputDirectory", "cas" } };
+
+  /**
+   * Estimated heap taken by a CAS per character of its document: the text, the annotations and
+   * their index entries.
+   */
+  private static final long CAS_BYTES_PER_CHARACTER = 64;
+
+  /**
+   * Estimated heap taken by an empty CAS.
+   */
+  private static final long CAS_MIN_BYTES = 2 * 1024 * 1024;
+
+  /**
+   * A configuration this much slower than the fastest is still preferred if it is smaller.
+   */
+  private static final double AUTOTUNE_TOLERANCE = 0.03;
+
   /**
    * The CPE instance.
    */
   private CollectionProcessingEngine mCPE;
 
+  /**
+   * Run without console interaction.
+   */
+  private boolean mBatch;
+
+  /**
+   * Performance report file, or null.
+   */
+  private File mReportFile;
+
+  /**
+   * Period of the metrics log in seconds, or 0.
+   */
+  private int mMetricsPeriod;
+
+  /**
+   * Trace file, or null.
+   */
+  private File mTraceFile;
+
+  /**
+   * Number of CASes of a calibration run, or 0 to run without autotuning.
+   */
+  private int mAutotuneSample;
+
+  /**
+   * Settings of the run recorded in the performance report.
+   */
+  private final Map<String, Object> mSettings = new LinkedHashMap<String, Object>();
+
+  /**
+   * Counted down when the CPE completes or aborts.
+   */
+  private final CountDownLatch mDone = new CountDownLatch(1);
+
+  /**
+   * Exit code of the run.
+   */
+  private volatile int mExitCode = 1;
+
   /**
    * Start time of CPE initialization
    */
@@ -71,6 +186,17 @@ public class SimpleRunCPE extends Thread {
     System.out.println("Parsing CPE Descriptor");
     CpeDescription cpeDesc = UIMAFramework.getXMLParser().parseCpeDescription(
             new XMLInputSource(args[0]));
+    if (!applyOptions(args, cpeDesc)) {
+      printUsageMessage();
+      System.exit(1);
+    }
+    if (mAutotuneSample > 0) {
+      autotune(args, cpeDesc);
+      mStartTime = System.currentTimeMillis();
+    }
+    mSettings.put("threads", Integer.valueOf(cpeDesc.getCpeCasProcessors().getConcurrentPUCount()));
+    mSettings.put("casPool", Integer.valueOf(cpeDesc.getCpeCasProcessors().getCasPoolSize()));
+    mSettings.put("autotuned", Boolean.valueOf(mAutotuneSample > 0));
     // instantiate CPE
     System.out.println("Instantiating CPE");
     mCPE = UIMAFramework.produceCollectionProcessingEngine(cpeDesc);
@@ -80,8 +206,19 @@ public class SimpleRunCPE extends Thread {
 
     // Start Processing
     System.out.println("Running CPE");
+    if (mMetricsPeriod > 0) {
+      StageMetrics.startLogging(mMetricsPeriod * 1000L, System.out);
+    }
+    if (mTraceFile != null) {
+      CasTrace.open(mTraceFile);
+    }
     mCPE.process();
 
+    if (mBatch) {
+      mDone.await();
+      return;
+    }
+
     // Allow user to abort by pressing Enter
     System.out.println("To abort processing, type \"abort\" and press enter.");
     while (true) {
@@ -94,12 +231,263 @@ public class SimpleRunCPE extends Thread {
     }
   }
 
+  /**
+   * Apply the command line options to the CPE description.
+   * 
+   * @param args
+   *          command line arguments; args[0] is the descriptor
+   * @param cpeDesc
+   *          the parsed CPE description
+   * @return true if the options are valid
+   */
+  private boolean applyOptions(String[] args, CpeDescription cpeDesc)
+          throws CpeDescriptorException {
+    for (int i = 1; i < args.length; i++) {
+      String option = args[i];
+      if ("-batch".equals(option)) {
+        mBatch = true;
+        continue;
+      }
+      if (i + 1 == args.length) {
+        return false;
+      }
+      String value = args[++i];
+      if ("-input".equals(option)) {
+        CpeCollectionReaderIterator reader = cpeDesc.getAllCollectionCollectionReaders()[0]
+                .getCollectionIterator();
+        CasProcessorConfigurationParameterSettings settings = reader
+                .getConfigurationParameterSettings();
+        if (settings == null) {
+          settings = CpeDescriptorFactory.produceCasProcessorConfigurationParameterSettings();
+        }
+        settings.setParameterValue("InputDirectory", value);
+        reader.setConfigurationParameterSettings(settings);
+      } else if ("-output".equals(option)) {
+        if (!setParameter(cpeDesc, WRITER_NAME, "outputFile", value)) {
+          return false;
+        }
+      } else if ("-incremental".equals(option)) {
+        if (!setParameter(cpeDesc, ANNOTATOR_NAME, "AnnotationCacheFile", value)) {
+          return false;
+        }
+      } else if ("-threads".equals(option)) {
+        cpeDesc.getCpeCasProcessors().setConcurrentPUCount(Integer.parseInt(value));
+      } else if ("-casPool".equals(option)) {
+        cpeDesc.getCpeCasProcessors().setPoolSize(Integer.parseInt(value));
+      } else if ("-report".equals(option)) {
+        mReportFile = new File(value);
+      } else if ("-autotune".equals(option)) {
+        mAutotuneSample = Integer.parseInt(value);
+        if (mAutotuneSample <= 0) {
+          return false;
+        }
+      } else if ("-trace".equals(option)) {
+        mTraceFile = new File(value);
+      } else if ("-metrics".equals(option)) {
+        mMetricsPeriod = Integer.parseInt(value);
+        if (mMetricsPeriod <= 0) {
+          return false;
+        }
+      } else {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Override a configuration parameter of the CAS processor with the given name.
+   * 
+   * @return true if the descriptor has a CAS processor of that name
+   */
+  private static boolean setParameter(CpeDescription cpeDesc, String processorName,
+          String parameter, Object value) throws CpeDescriptorException {
+    CpeCasProcessor processor = findProcessor(cpeDesc, processorName);
+    if (processor == null) {
+      System.out.println("No CAS processor named \"" + processorName + "\" in the descriptor");
+      return false;
+    }
+    CasProcessorConfigurationParameterSettings settings = processor
+            .getConfigurationParameterSettings();
+    if (settings == null) {
+      settings = CpeDescriptorFactory.produceCasProcessorConfigurationParameterSettings();
+    }
+    settings.setParameterValue(parameter, value);
+    processor.setConfigurationParameterSettings(settings);
+    return true;
+  }
+
+  /**
+   * @return the CAS processor with the given name, or null
+   */
+  private static CpeCasProcessor findProcessor(CpeDescription cpeDesc, String processorName)
+          throws CpeDescriptorException {
+    CpeCasProcessor[] processors = cpeDesc.getCpeCasProcessors().getAllCpeCasProcessors();
+    for (int i = 0; i < processors.length; i++) {
+      if (processorName.equals(processors[i].getName())) {
+        return processors[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Choose the thread count and CAS pool size of the run. <br>
+   * A warm-up calibration run with the settings of the descriptor loads the classes, compiles the
+   * hot code and measures the average document size. Each candidate configuration then processes
+   * the same first <code>-autotune</code> CASes of the input, and its throughput is measured from
+   * the end of initialization, so loading the model does not count. The candidates are thread
+   * counts of 1, 2, 4, ... up to the available processors, with a CAS pool of one and of two
+   * CASes per thread beyond a CAS being read; pools whose estimated size exceeds half of the free
+   * heap are left out. The smallest configuration within {@link #AUTOTUNE_TOLERANCE} of the
+   * fastest is chosen, as larger ones only add memory and contention for noise-level gains. <br>
+   * Calibration runs write the consumer outputs to a temporary directory and do not use the
+   * annotation store, so they neither replace the output of the run nor make it replay sentences
+   * decoded during calibration. If a calibration run fails, the settings of the descriptor are
+   * kept.
+   * 
+   * @param args
+   *          the command line, to configure every calibration run as the real one
+   * @param cpeDesc
+   *          the description of the real run, whose thread count and pool size are set
+   */
+  private void autotune(String[] args, CpeDescription cpeDesc) throws Exception {
+    File scratch = File.createTempFile("autotune", "");
+    if (!scratch.delete() || !scratch.mkdir()) {
+      throw new IOException("Cannot create " + scratch);
+    }
+    try {
+      int processors = Runtime.getRuntime().availableProcessors();
+      System.out.println("Autotuning on " + mAutotuneSample + " CASes, " + processors
+              + " processors, " + (Runtime.getRuntime().maxMemory() >> 20) + " MB heap");
+      CalibrationListener warmUp = calibrate(args, scratch, cpeDesc.getCpeCasProcessors()
+              .getConcurrentPUCount(), cpeDesc.getCpeCasProcessors().getCasPoolSize());
+      if (warmUp.errorCount.get() > 0 || warmUp.entityCount.get() == 0) {
+        System.out.println("Calibration failed; keeping the settings of the descriptor");
+        return;
+      }
+      System.gc();
+      Runtime runtime = Runtime.getRuntime();
+      long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+      long casBytes = Math.max(CAS_MIN_BYTES, CAS_BYTES_PER_CHARACTER * warmUp.size.get()
+              / warmUp.entityCount.get());
+      long maxPool = Math.max(2, freeHeap / 2 / casBytes);
+
+      List<int[]> candidates = new ArrayList<int[]>();
+      for (int threads = 1; threads <= processors; threads = nextThreadCount(threads,
+              processors)) {
+        int[] pools = { threads + 1, 2 * threads + 1 };
+        for (int i = 0; i < pools.length; i++) {
+          if (pools[i] <= maxPool) {
+            candidates.add(new int[] { threads, pools[i] });
+          }
+        }
+      }
+      int[] best = null;
+      double bestRate = 0.0;
+      double[] rates = new double[candidates.size()];
+      StringBuilder calibration = new StringBuilder();
+      for (int c = 0; c < candidates.size(); c++) {
+        int[] candidate = candidates.get(c);
+        CalibrationListener run = calibrate(args, scratch, candidate[0], candidate[1]);
+        if (run.errorCount.get() > 0) {
+          System.out.println("Calibration failed; keeping the settings of the descriptor");
+          return;
+        }
+        rates[c] = run.getRate();
+        System.out.println(String.format("  threads %d, CAS pool %d: %.1f CASes/s",
+                Integer.valueOf(candidate[0]), Integer.valueOf(candidate[1]),
+                Double.valueOf(rates[c])));
+        calibration.append(calibration.length() == 0 ? "" : " ").append(candidate[0])
+                .append('x').append(candidate[1]).append(':')
+                .append(String.format("%.1f", Double.valueOf(rates[c])));
+        bestRate = Math.max(bestRate, rates[c]);
+      }
+      for (int c = 0; c < candidates.size() && best == null; c++) {
+        if (rates[c] >= bestRate * (1.0 - AUTOTUNE_TOLERANCE)) {
+          best = candidates.get(c);
+        }
+      }
+      if (best == null) {
+        System.out.println("No configuration fits the heap; "
+                + "keeping the settings of the descriptor");
+        return;
+      }
+      System.out.println("Autotune chose threads " + best[0] + ", CAS pool " + best[1]);
+      cpeDesc.getCpeCasProcessors().setConcurrentPUCount(best[0]);
+      cpeDesc.getCpeCasProcessors().setPoolSize(best[1]);
+      mSettings.put("autotuneSample", Integer.valueOf(mAutotuneSample));
+      mSettings.put("autotuneCasesPerSecond", calibration.toString());
+      mSettings.put("processors", Integer.valueOf(processors));
+      mSettings.put("maxHeapMB", Long.valueOf(runtime.maxMemory() >> 20));
+    } finally {
+      StageMetrics.resetAll();
+      delete(scratch);
+    }
+  }
+
+  private static int nextThreadCount(int threads, int processors) {
+    return (threads < processors && 2 * threads > processors) ? processors : 2 * threads;
+  }
+
+  /**
+   * Run the first CASes of the input with the given settings and wait for the end of the run.
+   */
+  private CalibrationListener calibrate(String[] args, File scratch, int threads, int casPool)
+          throws Exception {
+    CpeDescription cpeDesc = UIMAFramework.getXMLParser().parseCpeDescription(
+            new XMLInputSource(args[0]));
+    applyOptions(args, cpeDesc);
+    cpeDesc.getCpeCasProcessors().setConcurrentPUCount(threads);
+    cpeDesc.getCpeCasProcessors().setPoolSize(casPool);
+    cpeDesc.getCpeConfiguration().setNumToProcess(mAutotuneSample);
+    for (int i = 0; i < CALIBRATION_OUTPUTS.length; i++) {
+      if (findProcessor(cpeDesc, CALIBRATION_OUTPUTS[i][0]) != null) {
+        setParameter(cpeDesc, CALIBRATION_OUTPUTS[i][0], CALIBRATION_OUTPUTS[i][1], new File(
+                scratch, CALIBRATION_OUTPUTS[i][2]).getPath());
+      }
+    }
+    if (findProcessor(cpeDesc, ANNOTATOR_NAME) != null) {
+      setParameter(cpeDesc, ANNOTATOR_NAME, "AnnotationCacheFile", "");
+    }
+    CollectionProcessingEngine cpe = UIMAFramework.produceCollectionProcessingEngine(cpeDesc);
+    CalibrationListener listener = new CalibrationListener();
+    cpe.addStatusCallbackListener(listener);
+    cpe.process();
+    listener.done.await();
+    return listener;
+  }
+
+  /**
+   * Delete a file, or a directory and its content.
+   */
+  private static void delete(File file) {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (int i = 0; i < files.length; i++) {
+        delete(files[i]);
+      }
+    }
+    file.delete();
+  }
+
   /**
      * 
      */
   private static void printUsageMessage() {
     System.out.println(" Arguments to the program are as follows : \n"
-            + "args[0] : path to CPE descriptor file");
+            + "args[0] : path to CPE descriptor file\n"
+            + "followed by any of\n"
+            + "  -batch            run without console interaction\n"
+            + "  -input <dir>      input directory of the collection reader\n"
+            + "  -output <file>    output file of the " + WRITER_NAME + "\n"
+            + "  -threads <n>      number of processing units\n"
+            + "  -casPool <n>      number of CASes in the pool\n"
+            + "  -incremental <f>  keep annotations in f and decode only changed sentences\n"
+            + "  -report <file>    write per-component timing as JSON, or CSV for *.csv\n"
+            + "  -metrics <s>      log per-stage latency and counters every s seconds\n"
+            + "  -trace <file>     trace the time of every CAS in every stage to file\n"
+            + "  -autotune <n>     calibrate threads and CAS pool on the first n CASes first");
   }
 
   /**
@@ -109,7 +497,8 @@ public class SimpleRunCPE extends Thread {
    *          Command line arguments - see class description
    */
   public static void main(String[] args) throws Exception {
-    new SimpleRunCPE(args);
+    SimpleRunCPE runner = new SimpleRunCPE(args);
+    System.exit(runner.mExitCode);
   }
 
   /**
@@ -118,9 +507,11 @@ public class SimpleRunCPE extends Thread {
    * 
    */
   class StatusCallbackListenerImpl implements StatusCallbackListener {
-    int entityCount = 0;
+    final AtomicLong entityCount = new AtomicLong();
+
+    final AtomicLong errorCount = new AtomicLong();
 
-    long size = 0;
+    final AtomicLong size = new AtomicLong();
 
     /**
      * Called when the initialization is completed.
@@ -139,9 +530,9 @@ public class SimpleRunCPE extends Thread {
      * 
      */
     public void batchProcessComplete() {
-      System.out.print("Completed " + entityCount + " documents");
-      if (size > 0) {
-        System.out.print("; " + size + " characters");
+      System.out.print("Completed " + entityCount.get() + " documents");
+      if (size.get() > 0) {
+        System.out.print("; " + size.get() + " characters");
       }
       System.out.println();
       long elapsedTime = System.currentTimeMillis() - mStartTime;
@@ -155,9 +546,9 @@ public class SimpleRunCPE extends Thread {
      */
     public void collectionProcessComplete() {
       long time = System.currentTimeMillis();
-      System.out.print("Completed " + entityCount + " documents");
-      if (size > 0) {
-        System.out.print("; " + size + " characters");
+      System.out.print("Completed " + entityCount.get() + " documents");
+      if (size.get() > 0) {
+        System.out.print("; " + size.get() + " characters");
       }
       System.out.println();
       long initTime = mInitCompleteTime - mStartTime;
@@ -169,9 +560,43 @@ public class SimpleRunCPE extends Thread {
 
       System.out.println("\n\n ------------------ PERFORMANCE REPORT ------------------\n");
       System.out.println(mCPE.getPerformanceReport().toString());
+      if (mMetricsPeriod > 0) {
+        StageMetrics.stopLogging();
+        for (StageMetrics stage : StageMetrics.all()) {
+          System.out.println(stage.summaryLine());
+        }
+      }
+      mExitCode = (errorCount.get() == 0) ? 0 : 1;
+      if (mTraceFile != null) {
+        try {
+          CasTrace.close();
+          System.out.println("Trace written to " + mTraceFile + "; summarize it with TraceSummary");
+        } catch (IOException e) {
+          e.printStackTrace();
+          mExitCode = 1;
+        }
+      }
+      if (mReportFile != null) {
+        try {
+          PerformanceReport report = new PerformanceReport(mCPE.getPerformanceReport(),
+                  entityCount.get(), size.get(), initTime, processingTime);
+          for (Map.Entry<String, Object> e : mSettings.entrySet()) {
+            report.setting(e.getKey(), e.getValue());
+          }
+          report.write(mReportFile);
+          System.out.println("Performance report written to " + mReportFile);
+        } catch (Exception e) {
+          e.printStackTrace();
+          mExitCode = 1;
+        }
+      }
+      if (mBatch) {
+        mDone.countDown();
+        return;
+      }
       // stop the JVM. Otherwise main thread will still be blocked waiting for
       // user to press Enter.
-      System.exit(1);
+      System.exit(mExitCode);
     }
 
     /**
@@ -199,6 +624,11 @@ public class SimpleRunCPE extends Thread {
      */
     public void aborted() {
       System.out.println("Aborted");
+      mExitCode = 1;
+      if (mBatch) {
+        mDone.countDown();
+        return;
+      }
       // stop the JVM. Otherwise main thread will still be blocked waiting for
       // user to press Enter.
       System.exit(1);
@@ -219,14 +649,79 @@ public class SimpleRunCPE extends Thread {
         for (int i = 0; i < exceptions.size(); i++) {
           ((Throwable) exceptions.get(i)).printStackTrace();
         }
+        errorCount.incrementAndGet();
         return;
       }
-      entityCount++;
+      entityCount.incrementAndGet();
       String docText = aCas.getDocumentText();
       if (docText != null) {
-        size += docText.length();
+        size.addAndGet(docText.length());
       }
     }
   }
 
+  /**
+   * Callback Listener of a calibration run. Counts the CASes and measures the processing time,
+   * without printing progress.
+   */
+  class CalibrationListener implements StatusCallbackListener {
+    final CountDownLatch done = new CountDownLatch(1);
+
+    final AtomicLong entityCount = new AtomicLong();
+
+    final AtomicLong errorCount = new AtomicLong();
+
+    final AtomicLong size = new AtomicLong();
+
+    volatile long initCompleteTime;
+
+    volatile long completeTime;
+
+    /**
+     * @return CASes processed per second of processing time
+     */
+    double getRate() {
+      long elapsed = completeTime - initCompleteTime;
+      return (elapsed <= 0) ? 0.0 : entityCount.get() * 1e9 / elapsed;
+    }
+
+    public void initializationComplete() {
+      initCompleteTime = System.nanoTime();
+    }
+
+    public void batchProcessComplete() {
+    }
+
+    public void collectionProcessComplete() {
+      completeTime = System.nanoTime();
+      done.countDown();
+    }
+
+    public void paused() {
+    }
+
+    public void resumed() {
+    }
+
+    public void aborted() {
+      errorCount.incrementAndGet();
+      done.countDown();
+    }
+
+    public void entityProcessComplete(CAS aCas, EntityProcessStatus aStatus) {
+      if (aStatus.isException()) {
+        List<Exception> exceptions = aStatus.getExceptions();
+        for (int i = 0; i < exceptions.size(); i++) {
+          ((Throwable) exceptions.get(i)).printStackTrace();
+        }
+        errorCount.incrementAndGet();
+        return;
+      }
+      entityCount.incrementAndGet();
+      String docText = aCas.getDocumentText();
+      if (docText != null) {
+        size.addAndGet(docText.length());
+      }
+    }
+  }
 }
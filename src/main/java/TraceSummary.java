@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import test.CasTrace;
+import test.LatencyHistogram;
+
+/**
+ * Summary of a {@link CasTrace} file written by SimpleRunCPE -trace. <br>
+ * Usage: <code>TraceSummary &lt;trace file&gt; [&lt;n&gt;]</code>. The stages are listed by the
+ * total time spent in them, with the distribution of their time per CAS, followed by the n
+ * slowest documents (10 by default) from the start of the reader span to the end of the last
+ * span, broken down by stage. The part of that time not spent in any stage is shown as waiting:
+ * the CAS was queued between stages, or the consumers were waiting for the CPE.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class TraceSummary {
+  private static final int DEFAULT_DOCUMENTS = 10;
+
+  /**
+   * Spans of one document.
+   */
+  private static class Document {
+    final String name;
+
+    long first = Long.MAX_VALUE;
+
+    long last = Long.MIN_VALUE;
+
+    long[] stageNanos = new long[4];
+
+    Document(String name) {
+      this.name = name;
+    }
+
+    long elapsed() {
+      return (first > last) ? 0 : last - first;
+    }
+
+    long busy() {
+      long busy = 0;
+      for (int i = 0; i < stageNanos.length; i++) {
+        busy += stageNanos[i];
+      }
+      return busy;
+    }
+  }
+
+  /**
+   * Time of one stage over all documents.
+   */
+  private static class Stage {
+    final String name;
+
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    long count;
+
+    long total;
+
+    Stage(String name) {
+      this.name = name;
+    }
+  }
+
+  private final List<Stage> mStages = new ArrayList<Stage>();
+
+  private final Map<Integer, Document> mDocuments = new HashMap<Integer, Document>();
+
+  private long mSpans;
+
+  private long mStart = Long.MAX_VALUE;
+
+  private long mEnd = Long.MIN_VALUE;
+
+  /**
+   * Read a trace file.
+   *
+   * @param file  the trace file
+   * @throws IOException  if the file cannot be read or is not a trace
+   */
+  public TraceSummary(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+            64 * 1024));
+    try {
+      if (in.readInt() != CasTrace.MAGIC) {
+        throw new IOException("Not a CAS trace: " + file);
+      }
+      while (true) {
+        int tag = in.read();
+        if (tag == -1) {
+          break;
+        }
+        if (tag == CasTrace.DOCUMENT) {
+          int document = in.readInt();
+          mDocuments.put(Integer.valueOf(document), new Document(in.readUTF()));
+        } else if (tag == CasTrace.STAGE) {
+          int stage = in.readUnsignedByte();
+          String name = in.readUTF();
+          while (mStages.size() <= stage) {
+            mStages.add(null);
+          }
+          mStages.set(stage, new Stage(name));
+        } else if (tag == CasTrace.SPAN) {
+          addSpan(in.readInt(), in.readUnsignedByte(), in.readLong(), in.readLong());
+        } else {
+          throw new IOException("Bad record " + tag + " in " + file);
+        }
+      }
+    } catch (EOFException e) {
+      // a trace cut short by a killed run: summarize the complete records
+    } finally {
+      in.close();
+    }
+  }
+
+  private void addSpan(int documentNumber, int stageNumber, long start, long duration)
+          throws IOException {
+    if (stageNumber >= mStages.size() || mStages.get(stageNumber) == null) {
+      throw new IOException("Span of undeclared stage " + stageNumber);
+    }
+    Stage stage = mStages.get(stageNumber);
+    stage.latency.record(duration);
+    stage.count++;
+    stage.total += duration;
+    mSpans++;
+    mStart = Math.min(mStart, start);
+    mEnd = Math.max(mEnd, start + duration);
+    Document document = mDocuments.get(Integer.valueOf(documentNumber));
+    if (document == null) {
+      return;
+    }
+    document.first = Math.min(document.first, start);
+    document.last = Math.max(document.last, start + duration);
+    if (stageNumber >= document.stageNanos.length) {
+      long[] grown = new long[Math.max(stageNumber + 1, 2 * document.stageNanos.length)];
+      System.arraycopy(document.stageNanos, 0, grown, 0, document.stageNanos.length);
+      document.stageNanos = grown;
+    }
+    document.stageNanos[stageNumber] += duration;
+  }
+
+  /**
+   * Print the stages by total time and the slowest documents.
+   *
+   * @param out        the stream printed to
+   * @param documents  number of documents listed
+   */
+  public void print(PrintStream out, int documents) {
+    out.println(mDocuments.size() + " documents, " + mSpans + " spans, "
+            + millis(mEnd > mStart ? mEnd - mStart : 0) + " ms traced");
+    out.println();
+
+    List<Stage> stages = new ArrayList<Stage>();
+    for (Stage stage : mStages) {
+      if (stage != null) {
+        stages.add(stage);
+      }
+    }
+    Collections.sort(stages, new Comparator<Stage>() {
+      public int compare(Stage a, Stage b) {
+        return (a.total < b.total) ? 1 : (a.total > b.total) ? -1 : 0;
+      }
+    });
+    out.println(String.format("%-24s %10s %12s %10s %10s %10s %10s", "stage", "count",
+            "total ms", "mean us", "p50 us", "p99 us", "max us"));
+    for (Stage stage : stages) {
+      long[] counts = stage.latency.snapshot();
+      out.println(String.format("%-24s %10d %12s %10s %10s %10s %10s", stage.name,
+              Long.valueOf(stage.count), millis(stage.total),
+              micros((long) LatencyHistogram.mean(counts)),
+              micros(LatencyHistogram.percentile(counts, 50)),
+              micros(LatencyHistogram.percentile(counts, 99)),
+              micros(LatencyHistogram.max(counts))));
+    }
+    out.println();
+
+    List<Document> slowest = new ArrayList<Document>(mDocuments.values());
+    Collections.sort(slowest, new Comparator<Document>() {
+      public int compare(Document a, Document b) {
+        long x = a.elapsed();
+        long y = b.elapsed();
+        return (x < y) ? 1 : (x > y) ? -1 : 0;
+      }
+    });
+    if (slowest.size() > documents) {
+      slowest = slowest.subList(0, documents);
+    }
+    out.println("Slowest " + slowest.size() + " documents, in ms");
+    StringBuilder header = new StringBuilder(String.format("%-32s %10s", "document", "elapsed"));
+    for (Stage stage : mStages) {
+      if (stage != null) {
+        header.append(String.format(" %18s", stage.name));
+      }
+    }
+    header.append(String.format(" %10s", "waiting"));
+    out.println(header);
+    for (Document document : slowest) {
+      StringBuilder line = new StringBuilder(String.format("%-32s %10s", document.name,
+              millis(document.elapsed())));
+      for (int i = 0; i < mStages.size(); i++) {
+        if (mStages.get(i) != null) {
+          long nanos = (i < document.stageNanos.length) ? document.stageNanos[i] : 0;
+          line.append(String.format(" %18s", millis(nanos)));
+        }
+      }
+      line.append(String.format(" %10s", millis(Math.max(0, document.elapsed()
+              - document.busy()))));
+      out.println(line);
+    }
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.3f", nanos / 1e6);
+  }
+
+  private static String micros(long nanos) {
+    return String.format("%.1f", nanos / 1e3);
+  }
+
+  /**
+   * @param args  the trace file and, optionally, the number of documents listed
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      System.out.println("Usage: TraceSummary <trace file> [<number of documents>]");
+      System.exit(1);
+    }
+    int documents = (args.length == 2) ? Integer.parseInt(args[1]) : DEFAULT_DOCUMENTS;
+    new TraceSummary(new File(args[0])).print(System.out, documents);
+  }
+}
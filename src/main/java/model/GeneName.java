@@ -63,57 +63,39 @@ public class GeneName extends Annotation {
  
     
   //*--------------*
-  //* Feature: ID
+  //* Feature: Sentence
 
-  /** getter for ID - gets The Sentence ID that contain this gene name
+  /** getter for Sentence - gets The sentence containing this gene name, which carries its ID
    * @generated */
-  public String getID() {
-    if (GeneName_Type.featOkTst && ((GeneName_Type)jcasType).casFeat_ID == null)
-      jcasType.jcas.throwFeatMissing("ID", "model.GeneName");
-    return jcasType.ll_cas.ll_getStringValue(addr, ((GeneName_Type)jcasType).casFeatCode_ID);}
+  public Sentence getSentence() {
+    if (GeneName_Type.featOkTst && ((GeneName_Type)jcasType).casFeat_Sentence == null)
+      jcasType.jcas.throwFeatMissing("Sentence", "model.GeneName");
+    return (Sentence)(jcasType.ll_cas.ll_getFSForRef(jcasType.ll_cas.ll_getRefValue(addr, ((GeneName_Type)jcasType).casFeatCode_Sentence)));}
     
-  /** setter for ID - sets The Sentence ID that contain this gene name 
+  /** setter for Sentence - sets The sentence containing this gene name, which carries its ID 
    * @generated */
-  public void setID(String v) {
-    if (GeneName_Type.featOkTst && ((GeneName_Type)jcasType).casFeat_ID == null)
-      jcasType.jcas.throwFeatMissing("ID", "model.GeneName");
-    jcasType.ll_cas.ll_setStringValue(addr, ((GeneName_Type)jcasType).casFeatCode_ID, v);}    
+  public void setSentence(Sentence v) {
+    if (GeneName_Type.featOkTst && ((GeneName_Type)jcasType).casFeat_Sentence == null)
+      jcasType.jcas.throwFeatMissing("Sentence", "model.GeneName");
+    jcasType.ll_cas.ll_setRefValue(addr, ((GeneName_Type)jcasType).casFeatCode_Sentence, jcasType.ll_cas.ll_getFSRef(v));}    
    
     
   //*--------------*
-  //* Feature: Name
+  //* Feature: Confidence
 
-  /** getter for Name - gets Gene's name
+  /** getter for Confidence - gets Probability of the gene name given the sentence, 1 if the tagger has no measure of confidence
    * @generated */
-  public String getName() {
-    if (GeneName_Type.featOkTst && ((GeneName_Type)jcasType).casFeat_Name == null)
-      jcasType.jcas.throwFeatMissing("Name", "model.GeneName");
-    return jcasType.ll_cas.ll_getStringValue(addr, ((GeneName_Type)jcasType).casFeatCode_Name);}
+  public double getConfidence() {
+    if (GeneName_Type.featOkTst && ((GeneName_Type)jcasType).casFeat_Confidence == null)
+      jcasType.jcas.throwFeatMissing("Confidence", "model.GeneName");
+    return jcasType.ll_cas.ll_getDoubleValue(addr, ((GeneName_Type)jcasType).casFeatCode_Confidence);}
     
-  /** setter for Name - sets Gene's name 
+  /** setter for Confidence - sets Probability of the gene name given the sentence, 1 if the tagger has no measure of confidence 
    * @generated */
-  public void setName(String v) {
-    if (GeneName_Type.featOkTst && ((GeneName_Type)jcasType).casFeat_Name == null)
-      jcasType.jcas.throwFeatMissing("Name", "model.GeneName");
-    jcasType.ll_cas.ll_setStringValue(addr, ((GeneName_Type)jcasType).casFeatCode_Name, v);}    
-   
-    
-  //*--------------*
-  //* Feature: Accumulate
-
-  /** getter for Accumulate - gets Accumulate offset generated by previous sentences
-   * @generated */
-  public int getAccumulate() {
-    if (GeneName_Type.featOkTst && ((GeneName_Type)jcasType).casFeat_Accumulate == null)
-      jcasType.jcas.throwFeatMissing("Accumulate", "model.GeneName");
-    return jcasType.ll_cas.ll_getIntValue(addr, ((GeneName_Type)jcasType).casFeatCode_Accumulate);}
-    
-  /** setter for Accumulate - sets Accumulate offset generated by previous sentences 
-   * @generated */
-  public void setAccumulate(int v) {
-    if (GeneName_Type.featOkTst && ((GeneName_Type)jcasType).casFeat_Accumulate == null)
-      jcasType.jcas.throwFeatMissing("Accumulate", "model.GeneName");
-    jcasType.ll_cas.ll_setIntValue(addr, ((GeneName_Type)jcasType).casFeatCode_Accumulate, v);}    
+  public void setConfidence(double v) {
+    if (GeneName_Type.featOkTst && ((GeneName_Type)jcasType).casFeat_Confidence == null)
+      jcasType.jcas.throwFeatMissing("Confidence", "model.GeneName");
+    jcasType.ll_cas.ll_setDoubleValue(addr, ((GeneName_Type)jcasType).casFeatCode_Confidence, v);}    
   }
 
     
\ No newline at end of file
@@ -45,56 +45,38 @@ public class GeneName_Type extends Annotation_Type {
   public final static boolean featOkTst = JCasRegistry.getFeatOkTst("model.GeneName");
  
   /** @generated */
-  final Feature casFeat_ID;
+  final Feature casFeat_Sentence;
   /** @generated */
-  final int     casFeatCode_ID;
+  final int     casFeatCode_Sentence;
   /** @generated */ 
-  public String getID(int addr) {
-        if (featOkTst && casFeat_ID == null)
-      jcas.throwFeatMissing("ID", "model.GeneName");
-    return ll_cas.ll_getStringValue(addr, casFeatCode_ID);
+  public int getSentence(int addr) {
+        if (featOkTst && casFeat_Sentence == null)
+      jcas.throwFeatMissing("Sentence", "model.GeneName");
+    return ll_cas.ll_getRefValue(addr, casFeatCode_Sentence);
   }
   /** @generated */    
-  public void setID(int addr, String v) {
-        if (featOkTst && casFeat_ID == null)
-      jcas.throwFeatMissing("ID", "model.GeneName");
-    ll_cas.ll_setStringValue(addr, casFeatCode_ID, v);}
+  public void setSentence(int addr, int v) {
+        if (featOkTst && casFeat_Sentence == null)
+      jcas.throwFeatMissing("Sentence", "model.GeneName");
+    ll_cas.ll_setRefValue(addr, casFeatCode_Sentence, v);}
     
   
  
   /** @generated */
-  final Feature casFeat_Name;
+  final Feature casFeat_Confidence;
   /** @generated */
-  final int     casFeatCode_Name;
+  final int     casFeatCode_Confidence;
   /** @generated */ 
-  public String getName(int addr) {
-        if (featOkTst && casFeat_Name == null)
-      jcas.throwFeatMissing("Name", "model.GeneName");
-    return ll_cas.ll_getStringValue(addr, casFeatCode_Name);
+  public double getConfidence(int addr) {
+        if (featOkTst && casFeat_Confidence == null)
+      jcas.throwFeatMissing("Confidence", "model.GeneName");
+    return ll_cas.ll_getDoubleValue(addr, casFeatCode_Confidence);
   }
   /** @generated */    
-  public void setName(int addr, String v) {
-        if (featOkTst && casFeat_Name == null)
-      jcas.throwFeatMissing("Name", "model.GeneName");
-    ll_cas.ll_setStringValue(addr, casFeatCode_Name, v);}
-    
-  
- 
-  /** @generated */
-  final Feature casFeat_Accumulate;
-  /** @generated */
-  final int     casFeatCode_Accumulate;
-  /** @generated */ 
-  public int getAccumulate(int addr) {
-        if (featOkTst && casFeat_Accumulate == null)
-      jcas.throwFeatMissing("Accumulate", "model.GeneName");
-    return ll_cas.ll_getIntValue(addr, casFeatCode_Accumulate);
-  }
-  /** @generated */    
-  public void setAccumulate(int addr, int v) {
-        if (featOkTst && casFeat_Accumulate == null)
-      jcas.throwFeatMissing("Accumulate", "model.GeneName");
-    ll_cas.ll_setIntValue(addr, casFeatCode_Accumulate, v);}
+  public void setConfidence(int addr, double v) {
+        if (featOkTst && casFeat_Confidence == null)
+      jcas.throwFeatMissing("Confidence", "model.GeneName");
+    ll_cas.ll_setDoubleValue(addr, casFeatCode_Confidence, v);}
     
   
 
@@ -107,16 +89,12 @@ public class GeneName_Type extends Annotation_Type {
     casImpl.getFSClassRegistry().addGeneratorForType((TypeImpl)this.casType, getFSGenerator());
 
  
-    casFeat_ID = jcas.getRequiredFeatureDE(casType, "ID", "uima.cas.String", featOkTst);
-    casFeatCode_ID  = (null == casFeat_ID) ? JCas.INVALID_FEATURE_CODE : ((FeatureImpl)casFeat_ID).getCode();
-
- 
-    casFeat_Name = jcas.getRequiredFeatureDE(casType, "Name", "uima.cas.String", featOkTst);
-    casFeatCode_Name  = (null == casFeat_Name) ? JCas.INVALID_FEATURE_CODE : ((FeatureImpl)casFeat_Name).getCode();
+    casFeat_Sentence = jcas.getRequiredFeatureDE(casType, "Sentence", "model.Sentence", featOkTst);
+    casFeatCode_Sentence  = (null == casFeat_Sentence) ? JCas.INVALID_FEATURE_CODE : ((FeatureImpl)casFeat_Sentence).getCode();
 
  
-    casFeat_Accumulate = jcas.getRequiredFeatureDE(casType, "Accumulate", "uima.cas.Integer", featOkTst);
-    casFeatCode_Accumulate  = (null == casFeat_Accumulate) ? JCas.INVALID_FEATURE_CODE : ((FeatureImpl)casFeat_Accumulate).getCode();
+    casFeat_Confidence = jcas.getRequiredFeatureDE(casType, "Confidence", "uima.cas.Double", featOkTst);
+    casFeatCode_Confidence  = (null == casFeat_Confidence) ? JCas.INVALID_FEATURE_CODE : ((FeatureImpl)casFeat_Confidence).getCode();
 
   }
 }
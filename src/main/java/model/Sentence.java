@@ -0,0 +1,83 @@
+
+
+/* First created by JCasGen Sun Oct 14 20:33:41 EDT 2012 */
+package model;
+
+import org.apache.uima.jcas.JCas; 
+import org.apache.uima.jcas.JCasRegistry;
+import org.apache.uima.jcas.cas.TOP_Type;
+
+import org.apache.uima.jcas.tcas.Annotation;
+
+
+/** 
+ * Updated by JCasGen Sun Oct 14 20:33:41 EDT 2012
+ * XML source: /Users/jacky/Documents/eclipse 2/hw1-yiwenche/src/main/resources/descriptors/GeneNameNERTypeSystem.xml
+ * @generated */
+public class Sentence extends Annotation {
+  /** @generated
+   * @ordered 
+   */
+  @SuppressWarnings ("hiding")
+  public final static int typeIndexID = JCasRegistry.register(Sentence.class);
+  /** @generated
+   * @ordered 
+   */
+  @SuppressWarnings ("hiding")
+  public final static int type = typeIndexID;
+  /** @generated  */
+  @Override
+  public              int getTypeIndexID() {return typeIndexID;}
+ 
+  /** Never called.  Disable default constructor
+   * @generated */
+  protected Sentence() {/* intentionally empty block */}
+    
+  /** Internal - constructor used by generator 
+   * @generated */
+  public Sentence(int addr, TOP_Type type) {
+    super(addr, type);
+    readObject();
+  }
+  
+  /** @generated */
+  public Sentence(JCas jcas) {
+    super(jcas);
+    readObject();   
+  } 
+
+  /** @generated */  
+  public Sentence(JCas jcas, int begin, int end) {
+    super(jcas);
+    setBegin(begin);
+    setEnd(end);
+    readObject();
+  }   
+
+  /** <!-- begin-user-doc -->
+    * Write your own initialization here
+    * <!-- end-user-doc -->
+  @generated modifiable */
+  private void readObject() {/*default - does nothing empty block */}
+     
+ 
+    
+  //*--------------*
+  //* Feature: ID
+
+  /** getter for ID - gets The ID of the sentence
+   * @generated */
+  public String getID() {
+    if (Sentence_Type.featOkTst && ((Sentence_Type)jcasType).casFeat_ID == null)
+      jcasType.jcas.throwFeatMissing("ID", "model.Sentence");
+    return jcasType.ll_cas.ll_getStringValue(addr, ((Sentence_Type)jcasType).casFeatCode_ID);}
+    
+  /** setter for ID - sets The ID of the sentence 
+   * @generated */
+  public void setID(String v) {
+    if (Sentence_Type.featOkTst && ((Sentence_Type)jcasType).casFeat_ID == null)
+      jcasType.jcas.throwFeatMissing("ID", "model.Sentence");
+    jcasType.ll_cas.ll_setStringValue(addr, ((Sentence_Type)jcasType).casFeatCode_ID, v);}    
+  }
+
+    
\ No newline at end of file
@@ -19,26 +19,23 @@
 
 package test;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.nio.charset.Charset;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
+import org.apache.uima.cas.FSIterator;
 import org.apache.uima.collection.CasConsumer_ImplBase;
 import org.apache.uima.collection.base_cpm.CasObjectProcessor;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceConfigurationException;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceProcessException;
 import org.apache.uima.util.ProcessTrace;
 
 import model.GeneName;
+import model.Sentence;
 
 /**
  * An CAS Consumer. <br>
@@ -47,7 +44,24 @@ import model.GeneName;
  * <ol>
  * <li> "outputFile" : file to which the evaluation results should be written.</li>
  * <li> "SampleFile" : standard file used in evaluation as benchmark.</li>
+ * <li> "Encoding" : character encoding of the standard file, as for the reader; the default
+ * system encoding if not set.</li>
+ * <li> "MapSampleFile" : memory-map the standard file instead of reading it on the heap; the
+ * mapped file is read as UTF-8, whatever the encoding.</li>
  * </ol>
+ * The standard file is parsed once, when the first replica is initialized, into a
+ * {@link GoldIndex}, or, for standard files of hundreds of megabytes, indexed in place by a
+ * {@link MappedGoldIndex}; all replicas share it through a {@link SharedGoldStandard}.
+ * Each CAS is scored against the standard mentions of the sentences it contains, and the counts
+ * are added to the counters of the replica in a {@link SharedEvaluation}. A partial report of
+ * each batch is written once every replica has ended it, and the micro- and macro-averaged
+ * report of the collection at the end of the collection, when the counters of the replicas are
+ * merged. Reports are handed to a {@link SharedOutput}, so the consumer holds no lock while
+ * scoring and can be deployed in every processing unit of the CPE.
+ * <br>
+ * The latency of every CAS is recorded in the {@link StageMetrics} of the stage
+ * "AnnotationEvaluator", with the bytes written to the report file and the flushes, and
+ * stamped in the {@link CasTrace} while one is open.
  * <br>
  * These parameters are set in the initialize method to the values specified in the descriptor file.
  * <br>
@@ -58,15 +72,53 @@ import model.GeneName;
  */
 
 public class AnnotationEvaluator extends CasConsumer_ImplBase implements CasObjectProcessor {
+  /**
+   * Name of optional configuration parameter that selects the memory-mapped standard index.
+   */
+  public static final String PARAM_MAPSAMPLEFILE = "MapSampleFile";
+
+  /**
+   * Name of the stage in the {@link StageMetrics}.
+   */
+  public static final String STAGE = "AnnotationEvaluator";
+
   File outFile;
   
   File sampleFile;
 
-  FileWriter fileWriter;
+  SharedGoldStandard goldIndex;
+
+  SharedOutput output;
+
+  SharedEvaluation evaluation;
+
+  private final StageMetrics mMetrics = StageMetrics.get(STAGE);
+
+  private SharedEvaluation.Counts mCounts;
+
+  /**
+   * Reused for every sentence: a replica only processes one CAS at a time.
+   */
+  private final SpaceOffsetMap mOffsetMap = new SpaceOffsetMap();
 
   public AnnotationEvaluator() {
   }
 
+  /**
+   * @return    the character encoding of the standard file, or null for the default one
+   */
+  private String encoding() {
+    return (String) getUimaContext().getConfigParameterValue("Encoding");
+  }
+
+  /**
+   * Get the shared index of the standard file, mapping it if <code>MapSampleFile</code> is set.
+   */
+  private SharedGoldStandard openGold(File file) throws IOException {
+    Boolean map = (Boolean) getUimaContext().getConfigParameterValue(PARAM_MAPSAMPLEFILE);
+    return SharedGoldStandard.acquire(file, map != null && map.booleanValue(), encoding());
+  }
+
   /**
    * Initializes this CAS Consumer with the parameters specified in the descriptor.
    * 
@@ -79,7 +131,16 @@ public class AnnotationEvaluator extends CasConsumer_ImplBase implements CasObje
     String oPath = (String) getUimaContext().getConfigParameterValue("outputFile");
     
     String samplePath = (String) getUimaContext().getConfigParameterValue("SampleFile");
+    if (samplePath == null) {
+      throw new ResourceInitializationException(
+              ResourceInitializationException.CONFIG_SETTING_ABSENT, new Object[] { "SampleFile" });
+    }
     sampleFile = new File(samplePath.trim());
+    try {
+      goldIndex = openGold(sampleFile);
+    } catch (IOException e) {
+      throw new ResourceInitializationException(e);
+    }
     
     // Output file should be specified in the descriptor
     if (oPath == null) {
@@ -96,17 +157,58 @@ public class AnnotationEvaluator extends CasConsumer_ImplBase implements CasObje
                     "outputFile" });
     }
     try {
-      fileWriter = new FileWriter(outFile);
+      open(outFile);
     } catch (IOException e) {
       throw new ResourceInitializationException(e);
     }
   }
 
+  /**
+   * Join the replicas reporting to an output file.
+   */
+  private synchronized void open(File file) throws IOException {
+    output = SharedOutput.acquire(file, Charset.defaultCharset(), 8192, mMetrics);
+    evaluation = SharedEvaluation.acquire(file);
+    mCounts = evaluation.newCounts();
+  }
+
+  /**
+   * Leave the replicas reporting to the output file. The batches the replica leaves complete are
+   * written, and the last replica to leave writes the result of the collection before the file is
+   * closed.
+   */
+  private synchronized void close() throws IOException {
+    if (output == null) {
+      return;
+    }
+    SharedOutput released = output;
+    output = null;
+    try {
+      StringBuilder reports = new StringBuilder();
+      synchronized (evaluation) {
+        boolean last = evaluation.release(mCounts);
+        drainBatches(reports);
+        if (last) {
+          reports.append(report("Evaluation Result", evaluation.total()));
+        }
+      }
+      if (reports.length() > 0) {
+        released.submit(reports.toString());
+      }
+    } finally {
+      evaluation = null;
+      mCounts = null;
+      released.release();
+    }
+  }
+
   /**
    * Processes the CasContainer which was populated by the TextAnalysisEngines. <br>
-   * In this case, the CAS index is iterated over selected annotations in order to get information 
-   * to calculate precision, recall and f-measure. Finally, write these measurements to
-   * the output file.
+   * In this case, the sentence and gene name indexes are walked together in order to count, for
+   * each sentence, the standard mentions, the annotations and the correct annotations. An
+   * annotation is compared with the standard by its sentence ID and its offsets in the sentence
+   * not counting spaces. The counts are added to the batch and collection counters of the
+   * replica.
    * 
    * @param aCAS
    *          CasContainer which has been populated by the TAEs
@@ -116,25 +218,8 @@ public class AnnotationEvaluator extends CasConsumer_ImplBase implements CasObje
    * 
    * @see org.apache.uima.collection.base_cpm.CasObjectProcessor#processCas(CAS)
    */
-  public synchronized void processCas(CAS aCAS) throws ResourceProcessException {
-    double precision, recall, f_measure;
-    precision = recall = f_measure = -1;
-    int total_rel = 0;
-    //Build a hashset to store the standard output from the sample file
-    HashSet<String> sample = new HashSet<String>();
-    try{
-      FileInputStream input = new FileInputStream(sampleFile);
-      BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-      String str = null;
-      while((str = reader.readLine()) != null){
-        total_rel++;  //count the total number of correct gene names
-        sample.add(str);
-      }
-      reader.close();
-    }catch(Exception e){
-      System.err.println(e.getMessage());
-    }
-    
+  public void processCas(CAS aCAS) throws ResourceProcessException {
+    long start = System.nanoTime();
     JCas jcas;
     try {
       jcas = aCAS.getJCas();
@@ -142,45 +227,76 @@ public class AnnotationEvaluator extends CasConsumer_ImplBase implements CasObje
       throw new ResourceProcessException(e);
     }
 
-    Iterator it = jcas.getAnnotationIndex(GeneName.type).iterator();
-
-    // iterate and judge if the annotation is a correct gene name annotation
-    int accumulate = 0;
-    int total_retrieve = 0;
-    int rel_retrieve = 0;
-    String result = null;
-    while (it.hasNext()) {
-      total_retrieve++; //count the total number of annotations created
-      GeneName annot = (GeneName) it.next();
-      accumulate = annot.getAccumulate();
-      result = annot.getID() + "|" + (annot.getBegin() - accumulate) + " " + 
-                               (annot.getEnd() - accumulate) + "|" + annot.getName();
-      if(sample.contains(result)){
-        rel_retrieve++; //count the total number of correct annotations
+    String docText = jcas.getDocumentText();
+    SpaceOffsetMap offsetMap = mOffsetMap;
+    EvaluationCounts casCounts = new EvaluationCounts();
+    FSIterator<Annotation> sentences = jcas.getAnnotationIndex(Sentence.type).iterator();
+    FSIterator<Annotation> it = jcas.getAnnotationIndex(GeneName.type).iterator();
+    GeneName annot = it.hasNext() ? (GeneName) it.next() : null;
+
+    // both indexes are in document order: walk the gene names of each sentence in turn
+    int sentBegin, sentEnd, begin, end;
+    while (sentences.hasNext()) {
+      Sentence sentence = (Sentence) sentences.next();
+      sentBegin = sentence.getBegin();
+      sentEnd = sentence.getEnd();
+      int retrieved = 0;
+      int correct = 0;
+      boolean mapped = false;
+      while (annot != null && annot.getBegin() < sentEnd) {
+        if (annot.getBegin() >= sentBegin) {
+          if (!mapped) {
+            offsetMap.reset(docText, sentBegin, sentEnd);
+            mapped = true;
+          }
+          retrieved++; //count the total number of annotations created
+          begin = annot.getBegin() - sentBegin;
+          end = annot.getEnd() - sentBegin - 1;
+          if (goldIndex.contains(sentence.getID(), begin - offsetMap.spacesUpTo(begin),
+                  end - offsetMap.spacesUpTo(end))) {
+            correct++; //count the total number of correct annotations
+          }
+        }
+        annot = it.hasNext() ? (GeneName) it.next() : null;
       }
+      casCounts.addSentence(goldIndex.count(sentence.getID()), retrieved, correct);
     }
-    //calculate precision, recall and f-measurement
-    precision = ((double)rel_retrieve) / ((double)total_retrieve);
-    recall = ((double)rel_retrieve) / ((double)total_rel);
-    f_measure = 2 * precision * recall / (precision + recall);
-    
-    try{
-      fileWriter.write("Evaluation Result\n");
-      fileWriter.write("Total Number of Gene Name Annotations in Standard File: " + total_rel + '\n');
-      fileWriter.write("Total Number of Gene Name Annotations CPE find: " + total_retrieve + '\n');
-      fileWriter.write("Total Number of Gene Name Annotations which are found to be correct: " + 
-                              rel_retrieve + '\n');
-      fileWriter.write("\n");
-      fileWriter.write("Precision: " + precision + '\n');
-      fileWriter.write("Recall: " + recall + '\n');
-      fileWriter.write("F-measure: " + f_measure + '\n');
-    }catch(IOException e){
-      System.err.println("IOException: " + e.getLocalizedMessage());
-    }
+    evaluation.add(mCounts, casCounts);
+    long finish = System.nanoTime();
+    mMetrics.recordLatency(finish - start);
+    CasTrace.span(STAGE, aCAS, start, finish);
   }
 
   /**
-   * Called when a batch of processing is completed.
+   * Format a report block with the given counts.
+   * 
+   * @param title   first line of the block
+   * @param counts  the counts to report
+   * @return          the text of the block
+   */
+  private static String report(String title, EvaluationCounts counts) {
+    StringBuilder report = new StringBuilder(512);
+    report.append(title).append('\n');
+    report.append("Total Number of Gene Name Annotations in Standard File: ")
+            .append(counts.getRelevant()).append('\n');
+    report.append("Total Number of Gene Name Annotations CPE find: ")
+            .append(counts.getRetrieved()).append('\n');
+    report.append("Total Number of Gene Name Annotations which are found to be correct: ")
+            .append(counts.getTruePositives()).append('\n');
+    report.append('\n');
+    report.append("Precision: ").append(counts.getMicroPrecision()).append('\n');
+    report.append("Recall: ").append(counts.getMicroRecall()).append('\n');
+    report.append("F-measure: ").append(counts.getMicroFMeasure()).append('\n');
+    report.append("Macro-averaged Precision: ").append(counts.getMacroPrecision()).append('\n');
+    report.append("Macro-averaged Recall: ").append(counts.getMacroRecall()).append('\n');
+    report.append("Macro-averaged F-measure: ").append(counts.getMacroFMeasure()).append('\n');
+    report.append('\n');
+    return report.toString();
+  }
+
+  /**
+   * Called when a batch of processing is completed. Writes the partial result of each batch that
+   * every replica has now completed.
    * 
    * @param aTrace
    *          ProcessTrace object that will log events in this method.
@@ -193,12 +309,31 @@ public class AnnotationEvaluator extends CasConsumer_ImplBase implements CasObje
    */
   public void batchProcessComplete(ProcessTrace aTrace) throws ResourceProcessException,
           IOException {
-    // nothing to do in this case as AnnotationPrinter doesnot do
-    // anything cumulatively
+    StringBuilder reports = new StringBuilder();
+    synchronized (evaluation) {
+      evaluation.endBatch(mCounts);
+      drainBatches(reports);
+    }
+    if (reports.length() == 0) {
+      return;
+    }
+    output.submit(reports.toString());
+    output.flush();
   }
 
   /**
-   * Called when the entire collection is completed.
+   * Append the partial result of every batch that all replicas have ended.
+   */
+  private void drainBatches(StringBuilder reports) {
+    EvaluationCounts counts;
+    while ((counts = evaluation.nextBatch()) != null) {
+      reports.append(report("Partial Evaluation Result (batch " + evaluation.getBatchNumber()
+              + ")", counts));
+    }
+  }
+
+  /**
+   * Called when the entire collection is completed. Writes the result of the collection.
    * 
    * @param aTrace
    *          ProcessTrace object that will log events in this method.
@@ -210,9 +345,7 @@ public class AnnotationEvaluator extends CasConsumer_ImplBase implements CasObje
    */
   public void collectionProcessComplete(ProcessTrace aTrace) throws ResourceProcessException,
           IOException {
-    if (fileWriter != null) {
-      fileWriter.close();
-    }
+    close();
   }
 
   /**
@@ -228,13 +361,26 @@ public class AnnotationEvaluator extends CasConsumer_ImplBase implements CasObje
   public void reconfigure() throws ResourceConfigurationException {
     super.reconfigure();
     // extract configuration parameter settings
+    String samplePath = (String) getUimaContext().getConfigParameterValue("SampleFile");
+    File sFile = new File(samplePath.trim());
+    // if standard file has changed, parse the new one
+    if (!sFile.equals(this.sampleFile)) {
+      try {
+        SharedGoldStandard previous = goldIndex;
+        goldIndex = openGold(sFile);
+        previous.release();
+      } catch (IOException e) {
+        throw new ResourceConfigurationException(e);
+      }
+      this.sampleFile = sFile;
+    }
     String oPath = (String) getUimaContext().getConfigParameterValue("outputFile");
     File oFile = new File(oPath.trim());
     // if output file has changed, close exiting file and open new
     if (!oFile.equals(this.outFile)) {
       this.outFile = oFile;
       try {
-        fileWriter.close();
+        close();
 
         // If specified output directory does not exist, try to create it
         if (oFile.getParentFile() != null && !oFile.getParentFile().exists()) {
@@ -243,7 +389,7 @@ public class AnnotationEvaluator extends CasConsumer_ImplBase implements CasObje
                     ResourceInitializationException.RESOURCE_DATA_NOT_VALID, new Object[] { oPath,
                         "outputFile" });
         }
-        fileWriter = new FileWriter(oFile);
+        open(oFile);
       } catch (IOException e) {
         throw new ResourceConfigurationException();
       }
@@ -256,12 +402,14 @@ public class AnnotationEvaluator extends CasConsumer_ImplBase implements CasObje
    * @see org.apache.uima.resource.Resource#destroy()
    */
   public void destroy() {
-    if (fileWriter != null) {
-      try {
-        fileWriter.close();
-      } catch (IOException e) {
-        // ignore IOException on destroy
-      }
+    try {
+      close();
+    } catch (IOException e) {
+      // ignore IOException on destroy
+    }
+    if (goldIndex != null) {
+      goldIndex.release();
+      goldIndex = null;
     }
   }
 
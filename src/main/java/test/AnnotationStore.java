@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chunk spans of every sentence annotated so far, kept in a local file between runs. <br>
+ * Entries are keyed by sentence ID and carry a 64-bit FNV-1a hash of the sentence text, so an
+ * entry is only replayed while the sentence is unchanged; an edited sentence is decoded again and
+ * its entry replaced. The file also records a key of the model that produced the spans, and is
+ * ignored when the model changes. <br>
+ * All annotator replicas using the same file share one instance, obtained with
+ * {@link #acquire(File, String)} and returned with {@link #release()}. The file is rewritten by
+ * {@link #save()}, through a temporary file, only when entries were added.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class AnnotationStore {
+  private static final int MAGIC = 0x474e5332; // "GNS2"
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private static final Map<File, AnnotationStore> OPEN = new HashMap<File, AnnotationStore>();
+
+  private static class Entry {
+    final long hash;
+
+    final int[] spans;
+
+    Entry(long hash, int[] spans) {
+      this.hash = hash;
+      this.spans = spans;
+    }
+  }
+
+  private final File mFile;
+
+  private final String mModelKey;
+
+  private final ConcurrentHashMap<String, Entry> mEntries = new ConcurrentHashMap<String, Entry>();
+
+  private volatile boolean mDirty;
+
+  private int mReferences;
+
+  private AnnotationStore(File file, String modelKey) throws IOException {
+    mFile = file;
+    mModelKey = modelKey;
+    if (file.exists()) {
+      load();
+    }
+  }
+
+  /**
+   * Get the store kept in a file, reading the file if no replica holds it yet.
+   *
+   * @param file      the store file; it need not exist
+   * @param modelKey  identifies the model producing the spans
+   * @return            the store
+   * @throws IOException  if the file exists but cannot be read
+   */
+  public static AnnotationStore acquire(File file, String modelKey) throws IOException {
+    File key = file.getCanonicalFile();
+    synchronized (OPEN) {
+      AnnotationStore store = OPEN.get(key);
+      if (store == null) {
+        store = new AnnotationStore(key, modelKey);
+        OPEN.put(key, store);
+      }
+      store.mReferences++;
+      return store;
+    }
+  }
+
+  /**
+   * Give up a replica's reference. Entries not saved are lost when the last reference goes.
+   */
+  public void release() {
+    synchronized (OPEN) {
+      if (--mReferences == 0) {
+        OPEN.remove(mFile);
+      }
+    }
+  }
+
+  /**
+   * Hash the text of a sentence.
+   *
+   * @param text  the sentence
+   * @return        its 64-bit FNV-1a hash
+   */
+  public static long hash(CharSequence text) {
+    long hash = FNV_OFFSET;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+      hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * @param id    the sentence ID
+   * @param hash  the hash of the sentence text
+   * @return        the stored spans, or null if the sentence is new or changed
+   */
+  public int[] get(String id, long hash) {
+    Entry entry = mEntries.get(id);
+    return (entry == null || entry.hash != hash) ? null : entry.spans;
+  }
+
+  /**
+   * Store the spans found in a sentence.
+   *
+   * @param id     the sentence ID
+   * @param hash   the hash of the sentence text
+   * @param spans  the mentions, as returned by a {@link GeneTagger}
+   */
+  public void put(String id, long hash, int[] spans) {
+    mEntries.put(id, new Entry(hash, spans));
+    mDirty = true;
+  }
+
+  /**
+   * @return    the number of sentences stored
+   */
+  public int size() {
+    return mEntries.size();
+  }
+
+  /**
+   * Write the store to its file if entries were added since it was read or last saved.
+   *
+   * @throws IOException  if the file cannot be written
+   */
+  public synchronized void save() throws IOException {
+    if (!mDirty) {
+      return;
+    }
+    mDirty = false;
+    File tmp = new File(mFile.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+            tmp), 64 * 1024));
+    try {
+      out.writeInt(MAGIC);
+      out.writeUTF(mModelKey);
+      out.writeInt(mEntries.size());
+      for (Map.Entry<String, Entry> e : mEntries.entrySet()) {
+        int[] spans = e.getValue().spans;
+        out.writeUTF(e.getKey());
+        out.writeLong(e.getValue().hash);
+        out.writeInt(spans.length);
+        for (int i = 0; i < spans.length; i++) {
+          out.writeInt(spans[i]);
+        }
+      }
+    } finally {
+      out.close();
+    }
+    if ((mFile.exists() && !mFile.delete()) || !tmp.renameTo(mFile)) {
+      mDirty = true;
+      throw new IOException("Cannot replace " + mFile + " with " + tmp);
+    }
+  }
+
+  private void load() throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile),
+            64 * 1024));
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not an annotation store: " + mFile);
+      }
+      if (!mModelKey.equals(in.readUTF())) {
+        // spans of another model: start over, the file is replaced on save
+        mDirty = true;
+        return;
+      }
+      int count = in.readInt();
+      for (int n = 0; n < count; n++) {
+        String id = in.readUTF();
+        long hash = in.readLong();
+        int[] spans = new int[in.readInt()];
+        for (int i = 0; i < spans.length; i++) {
+          spans[i] = in.readInt();
+        }
+        mEntries.put(id, new Entry(hash, spans));
+      }
+    } catch (EOFException e) {
+      throw new IOException("Truncated annotation store: " + mFile);
+    } finally {
+      in.close();
+    }
+  }
+}
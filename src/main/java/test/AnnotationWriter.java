@@ -20,20 +20,22 @@
 package test;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Iterator;
+import java.nio.charset.Charset;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
+import org.apache.uima.cas.FSIterator;
 import org.apache.uima.collection.CasConsumer_ImplBase;
 import org.apache.uima.collection.base_cpm.CasObjectProcessor;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceConfigurationException;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceProcessException;
 import org.apache.uima.util.ProcessTrace;
 
 import model.GeneName;
+import model.Sentence;
 
 /**
  * An CAS Consumer. <br>
@@ -41,7 +43,21 @@ import model.GeneName;
  * Parameters needed by the AnnotationWriter are
  * <ol>
  * <li> "outputFile" : file to which the output files should be written.</li>
+ * <li> "Encoding" : character encoding of the output file, UTF-8 if not specified.</li>
+ * <li> "BufferSize" : size in characters of the output buffer.</li>
  * </ol>
+ * A line gives the ID of the sentence of an annotation, the offsets of the annotation in the
+ * sentence not counting spaces, and its covered text, which is copied from the document text
+ * straight into the buffer. <br>
+ * The lines of a CAS are formatted into a buffer owned by the replica and handed as one
+ * block to a {@link SharedOutput}, whose single writer thread writes them to the file. No lock is
+ * held while formatting, so the consumer can be deployed in every processing unit of the CPE;
+ * all replicas writing to the same file share one output. The file buffer is written out when it
+ * is full, at the end of each batch and at the end of the collection.
+ * <br>
+ * The latency of every CAS is recorded in the {@link StageMetrics} of the stage
+ * "AnnotationWriter", with the bytes written to the file and the flushes, and stamped in the
+ * {@link CasTrace} while one is open.
  * <br>
  * These parameters are set in the initialize method to the values specified in the descriptor file.
  * <br>
@@ -52,9 +68,39 @@ import model.GeneName;
  */
 
 public class AnnotationWriter extends CasConsumer_ImplBase implements CasObjectProcessor {
+  /**
+   * Name of optional configuration parameter that contains the character encoding of the output.
+   */
+  public static final String PARAM_ENCODING = "Encoding";
+
+  /**
+   * Name of optional configuration parameter that contains the output buffer size in characters.
+   */
+  public static final String PARAM_BUFFERSIZE = "BufferSize";
+
+  /**
+   * Name of the stage in the {@link StageMetrics}.
+   */
+  public static final String STAGE = "AnnotationWriter";
+
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
   File outFile;
 
-  FileWriter fileWriter;
+  SharedOutput output;
+
+  private Charset mCharset;
+
+  private int mBufferSize;
+
+  private StageMetrics mMetrics;
+
+  /**
+   * Reused for every CAS: a replica only processes one CAS at a time, whichever thread calls it.
+   */
+  private final StringBuilder mBuffer = new StringBuilder();
+
+  private final SpaceOffsetMap mOffsetMap = new SpaceOffsetMap();
 
   public AnnotationWriter() {
   }
@@ -83,8 +129,13 @@ public class AnnotationWriter extends CasConsumer_ImplBase implements CasObjectP
                 ResourceInitializationException.RESOURCE_DATA_NOT_VALID, new Object[] { oPath,
                     "outputFile" });
     }
+    String encoding = (String) getUimaContext().getConfigParameterValue(PARAM_ENCODING);
+    mCharset = Charset.forName(encoding == null ? "UTF-8" : encoding);
+    Integer bufferSize = (Integer) getUimaContext().getConfigParameterValue(PARAM_BUFFERSIZE);
+    mBufferSize = (bufferSize == null) ? DEFAULT_BUFFER_SIZE : bufferSize.intValue();
+    mMetrics = StageMetrics.get(STAGE);
     try {
-      fileWriter = new FileWriter(outFile);
+      output = SharedOutput.acquire(outFile, mCharset, mBufferSize, mMetrics);
     } catch (IOException e) {
       throw new ResourceInitializationException(e);
     }
@@ -101,8 +152,8 @@ public class AnnotationWriter extends CasConsumer_ImplBase implements CasObjectP
    *           if there is an error in processing the Resource
    * @see org.apache.uima.collection.base_cpm.CasObjectProcessor#processCas(CAS)
    */
-  public synchronized void processCas(CAS aCAS) throws ResourceProcessException {
-    
+  public void processCas(CAS aCAS) throws ResourceProcessException {
+    long start = System.nanoTime();
     JCas jcas;
     try {
       jcas = aCAS.getJCas();
@@ -110,22 +161,38 @@ public class AnnotationWriter extends CasConsumer_ImplBase implements CasObjectP
       throw new ResourceProcessException(e);
     }
 
-    Iterator it = jcas.getAnnotationIndex(GeneName.type).iterator();
+    FSIterator<Annotation> it = jcas.getAnnotationIndex(GeneName.type).iterator();
 
-    // iterate and write annotations to the output file
-    int accumulate = 0;
+    // iterate and format annotations into the replica's buffer
+    String docText = jcas.getDocumentText();
+    StringBuilder buffer = mBuffer;
+    buffer.setLength(0);
+    SpaceOffsetMap offsetMap = mOffsetMap;
+    int sentBegin = -1;
+    int begin, end;
     while (it.hasNext()) {
       GeneName annot = (GeneName) it.next();
-      try {
-        accumulate = annot.getAccumulate();
-        fileWriter.write(annot.getID() + "|" + (annot.getBegin() - accumulate) + " " + 
-                               (annot.getEnd() - accumulate) + "|" + annot.getName());
-        fileWriter.write("\n");
-        fileWriter.flush();
-      } catch (IOException e) {
-        throw new ResourceProcessException(e);
+      Sentence sentence = annot.getSentence();
+      if (sentence.getBegin() != sentBegin) {
+        // gene names come in document order, so each sentence is mapped once
+        sentBegin = sentence.getBegin();
+        offsetMap.reset(docText, sentBegin, sentence.getEnd());
       }
+      begin = annot.getBegin() - sentBegin;
+      end = annot.getEnd() - sentBegin - 1;
+      buffer.append(sentence.getID()).append('|')
+              .append(begin - offsetMap.spacesUpTo(begin)).append(' ')
+              .append(end - offsetMap.spacesUpTo(end)).append('|')
+              .append(docText, annot.getBegin(), annot.getEnd()).append('\n');
     }
+    try {
+      output.submit(buffer.toString());
+    } catch (IOException e) {
+      throw new ResourceProcessException(e);
+    }
+    long finish = System.nanoTime();
+    mMetrics.recordLatency(finish - start);
+    CasTrace.span(STAGE, aCAS, start, finish);
   }
 
   /**
@@ -141,8 +208,7 @@ public class AnnotationWriter extends CasConsumer_ImplBase implements CasObjectP
    */
   public void batchProcessComplete(ProcessTrace aTrace) throws ResourceProcessException,
           IOException {
-    // nothing to do in this case as AnnotationWriter does not do
-    // anything cumulatively
+    output.flush();
   }
 
   /**
@@ -158,8 +224,17 @@ public class AnnotationWriter extends CasConsumer_ImplBase implements CasObjectP
    */
   public void collectionProcessComplete(ProcessTrace aTrace) throws ResourceProcessException,
           IOException {
-    if (fileWriter != null) {
-      fileWriter.close();
+    releaseOutput();
+  }
+
+  /**
+   * Give up this replica's reference to the output; the last replica closes the file.
+   */
+  private synchronized void releaseOutput() throws IOException {
+    if (output != null) {
+      SharedOutput released = output;
+      output = null;
+      released.release();
     }
   }
 
@@ -182,7 +257,7 @@ public class AnnotationWriter extends CasConsumer_ImplBase implements CasObjectP
     if (!oFile.equals(this.outFile)) {
       this.outFile = oFile;
       try {
-        fileWriter.close();
+        releaseOutput();
 
         // If specified output directory does not exist, try to create it
         if (oFile.getParentFile() != null && !oFile.getParentFile().exists()) {
@@ -191,7 +266,7 @@ public class AnnotationWriter extends CasConsumer_ImplBase implements CasObjectP
                     ResourceInitializationException.RESOURCE_DATA_NOT_VALID, new Object[] { oPath,
                         "outputFile" });
         }
-        fileWriter = new FileWriter(oFile);
+        output = SharedOutput.acquire(oFile, mCharset, mBufferSize, mMetrics);
       } catch (IOException e) {
         throw new ResourceConfigurationException();
       }
@@ -204,14 +279,11 @@ public class AnnotationWriter extends CasConsumer_ImplBase implements CasObjectP
    * @see org.apache.uima.resource.Resource#destroy()
    */
   public void destroy() {
-    if (fileWriter != null) {
-      try {
-        fileWriter.close();
-      } catch (IOException e) {
-        // ignore IOException on destroy
-      }
+    try {
+      releaseOutput();
+    } catch (IOException e) {
+      // ignore IOException on destroy
     }
   }
 
 }
-
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.InflaterInputStream;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.collection.CollectionException;
+import org.apache.uima.collection.CollectionReader_ImplBase;
+import org.apache.uima.resource.ResourceConfigurationException;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Level;
+import org.apache.uima.util.Progress;
+import org.apache.uima.util.ProgressImpl;
+
+/**
+ * A collection reader that restores the CASes saved by a {@link BinaryCasWriter}. It is
+ * configured with the following parameter:
+ * <ul>
+ * <li><code>InputDirectory</code> - directory of the segment files</li>
+ * </ul>
+ * The segments are read in the order they were written, and every record replaces the content of
+ * the CAS it is given, annotations included, so a pipeline started from this reader continues
+ * where the annotating run stopped. The type system of the CPE must be the one of the run that
+ * wrote the segments. A record cut short, as left by a run that was killed, ends the collection
+ * with a warning instead of failing it. While a {@link CasTrace} is open, every restored CAS is
+ * named after its segment and record number.
+ * 
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class BinaryCasReader extends CollectionReader_ImplBase {
+  /**
+   * Name of configuration parameter that must be set to the directory of the segment files.
+   */
+  public static final String PARAM_INPUTDIR = "InputDirectory";
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private File[] mSegments;
+
+  private int mCurrentIndex;
+
+  private DataInputStream mIn;
+
+  private byte[] mRecord = new byte[64 * 1024];
+
+  private int mRecordLength;
+
+  private int mCasCount;
+
+  /**
+   * @see org.apache.uima.collection.CollectionReader_ImplBase#initialize()
+   */
+  public void initialize() throws ResourceInitializationException {
+    String path = (String) getConfigParameterValue(PARAM_INPUTDIR);
+    if (path == null) {
+      throw new ResourceInitializationException(
+              ResourceInitializationException.CONFIG_SETTING_ABSENT,
+              new Object[] { PARAM_INPUTDIR });
+    }
+    File directory = new File(path.trim());
+    if (!directory.isDirectory()) {
+      throw new ResourceInitializationException(ResourceConfigurationException.DIRECTORY_NOT_FOUND,
+              new Object[] { PARAM_INPUTDIR, this.getMetaData().getName(), directory.getPath() });
+    }
+    mSegments = directory.listFiles(new FilenameFilter() {
+      public boolean accept(File dir, String name) {
+        return name.endsWith(CasSegmentOutput.SUFFIX);
+      }
+    });
+    Arrays.sort(mSegments);
+    mCurrentIndex = 0;
+    mCasCount = 0;
+    try {
+      advance();
+    } catch (IOException e) {
+      throw new ResourceInitializationException(e);
+    }
+  }
+
+  /**
+   * @see org.apache.uima.collection.CollectionReader#hasNext()
+   */
+  public boolean hasNext() {
+    return mRecordLength >= 0;
+  }
+
+  /**
+   * Restore the next saved CAS.
+   * 
+   * @param aCAS  the CAS to fill
+   * @throws IOException  if a segment cannot be read
+   * @throws CollectionException  if there is no next CAS
+   * @see org.apache.uima.collection.CollectionReader#getNext(org.apache.uima.cas.CAS)
+   */
+  public void getNext(CAS aCAS) throws IOException, CollectionException {
+    if (mRecordLength < 0) {
+      throw new CollectionException(new EOFException("No more saved CASes"));
+    }
+    long start = System.nanoTime();
+    Serialization.deserializeCAS(aCAS, new InflaterInputStream(new ByteArrayInputStream(mRecord,
+            0, mRecordLength)));
+    if (CasTrace.isEnabled()) {
+      CasTrace.document(aCAS, mSegments[mCurrentIndex - 1].getName() + '#' + mCasCount, start,
+              System.nanoTime());
+    }
+    mCasCount++;
+    advance();
+  }
+
+  /**
+   * Read the next complete record into mRecord, opening the next segments as needed; set
+   * mRecordLength to -1 at the end of the collection.
+   */
+  private void advance() throws IOException {
+    mRecordLength = -1;
+    while (true) {
+      if (mIn == null) {
+        if (mCurrentIndex == mSegments.length) {
+          return;
+        }
+        File segment = mSegments[mCurrentIndex++];
+        mIn = new DataInputStream(new BufferedInputStream(new FileInputStream(segment),
+                READ_BUFFER_SIZE));
+        if (mIn.readInt() != CasSegmentOutput.MAGIC) {
+          close();
+          throw new IOException("Not a CAS segment: " + segment);
+        }
+      }
+      int length;
+      try {
+        length = mIn.readInt();
+      } catch (EOFException e) {
+        // end of this segment
+        close();
+        continue;
+      }
+      if (length > mRecord.length) {
+        mRecord = new byte[Math.max(length, 2 * mRecord.length)];
+      }
+      try {
+        mIn.readFully(mRecord, 0, length);
+      } catch (EOFException e) {
+        getLogger().log(Level.WARNING, "Truncated record in " + mSegments[mCurrentIndex - 1]
+                + " after " + mCasCount + " CASes; the rest of the segments is ignored");
+        close();
+        mCurrentIndex = mSegments.length;
+        return;
+      }
+      mRecordLength = length;
+      return;
+    }
+  }
+
+  /**
+   * @see org.apache.uima.collection.base_cpm.BaseCollectionReader#close()
+   */
+  public void close() throws IOException {
+    if (mIn != null) {
+      mIn.close();
+      mIn = null;
+    }
+  }
+
+  /**
+   * @see org.apache.uima.collection.base_cpm.BaseCollectionReader#getProgress()
+   */
+  public Progress[] getProgress() {
+    return new Progress[] { new ProgressImpl(mCasCount, -1, Progress.ENTITIES) };
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.collection.CasConsumer_ImplBase;
+import org.apache.uima.collection.base_cpm.CasObjectProcessor;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceProcessException;
+import org.apache.uima.util.Level;
+import org.apache.uima.util.ProcessTrace;
+
+/**
+ * An CAS Consumer. <br>
+ * BinaryCasWriter saves every annotated CAS, with its document text, sentences and gene names, in
+ * rolling segment files, so that later stages can be run from the saved CASes by a
+ * {@link BinaryCasReader} without running the annotator again. Parameters needed by the
+ * BinaryCasWriter are
+ * <ol>
+ * <li> "OutputDirectory" : directory of the segment files; segments left by an earlier run are
+ * deleted.</li>
+ * <li> "SegmentSize" : size in megabytes after which a new segment is started.</li>
+ * <li> "CompressionLevel" : deflate level of the records, from 1 (fastest) to 9 (smallest).</li>
+ * </ol>
+ * Each CAS is written in the binary serialization form of UIMA and deflated into a buffer owned
+ * by the replica; only the append of the finished record to the {@link CasSegmentOutput} is done
+ * under a lock, so the consumer can be deployed in every processing unit of the CPE. The segments
+ * are flushed at the end of each batch and closed at the end of the collection. <br>
+ * The latency of every CAS is recorded in the {@link StageMetrics} of the stage
+ * "BinaryCasWriter", with the bytes of the records appended and the flushes, and stamped in the
+ * {@link CasTrace} while one is open.
+ * 
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class BinaryCasWriter extends CasConsumer_ImplBase implements CasObjectProcessor {
+  /**
+   * Name of configuration parameter that must be set to the directory of the segment files.
+   */
+  public static final String PARAM_OUTPUTDIR = "OutputDirectory";
+
+  /**
+   * Name of optional configuration parameter that contains the segment size in megabytes.
+   */
+  public static final String PARAM_SEGMENTSIZE = "SegmentSize";
+
+  /**
+   * Name of optional configuration parameter that contains the deflate level of the records.
+   */
+  public static final String PARAM_COMPRESSIONLEVEL = "CompressionLevel";
+
+  /**
+   * Name of the stage in the {@link StageMetrics}.
+   */
+  public static final String STAGE = "BinaryCasWriter";
+
+  private static final int DEFAULT_SEGMENT_SIZE = 64;
+
+  /**
+   * Serialization buffer of a replica, exposing its array to avoid a copy per record.
+   */
+  private static class RecordBuffer extends ByteArrayOutputStream {
+    final Deflater deflater;
+
+    RecordBuffer(int level) {
+      super(64 * 1024);
+      deflater = new Deflater(level);
+    }
+
+    byte[] array() {
+      return buf;
+    }
+  }
+
+  private CasSegmentOutput output;
+
+  private int mLevel;
+
+  private StageMetrics mMetrics;
+
+  private AtomicLong mBytesWritten;
+
+  private AtomicLong mFlushes;
+
+  private RecordBuffer mBuffer;
+
+  /**
+   * Initializes this CAS Consumer with the parameters specified in the descriptor.
+   * 
+   * @throws ResourceInitializationException
+   *           if there is error in initializing the resources
+   */
+  public void initialize() throws ResourceInitializationException {
+    String oPath = (String) getUimaContext().getConfigParameterValue(PARAM_OUTPUTDIR);
+    if (oPath == null) {
+      throw new ResourceInitializationException(
+              ResourceInitializationException.CONFIG_SETTING_ABSENT,
+              new Object[] { PARAM_OUTPUTDIR });
+    }
+    Integer segmentSize = (Integer) getUimaContext().getConfigParameterValue(PARAM_SEGMENTSIZE);
+    Integer level = (Integer) getUimaContext().getConfigParameterValue(PARAM_COMPRESSIONLEVEL);
+    mLevel = (level == null) ? Deflater.BEST_SPEED : level.intValue();
+    long megabytes = (segmentSize == null) ? DEFAULT_SEGMENT_SIZE : segmentSize.intValue();
+    if (megabytes <= 0 || mLevel < Deflater.BEST_SPEED || mLevel > Deflater.BEST_COMPRESSION) {
+      throw new ResourceInitializationException(
+              ResourceInitializationException.RESOURCE_DATA_NOT_VALID, new Object[] {
+                  megabytes + "/" + mLevel, PARAM_SEGMENTSIZE + "/" + PARAM_COMPRESSIONLEVEL });
+    }
+    mBuffer = new RecordBuffer(mLevel);
+    mMetrics = StageMetrics.get(STAGE);
+    mBytesWritten = mMetrics.counter("bytesWritten");
+    mFlushes = mMetrics.counter("flushes");
+    try {
+      output = CasSegmentOutput.acquire(new File(oPath.trim()), megabytes * 1024 * 1024);
+    } catch (IOException e) {
+      throw new ResourceInitializationException(e);
+    }
+  }
+
+  /**
+   * Serialize and deflate the CAS in the replica's buffer, then append it as one record.
+   * 
+   * @param aCAS
+   *          CasContainer which has been populated by the TAEs
+   * @throws ResourceProcessException
+   *           if there is an error in processing the Resource
+   * @see org.apache.uima.collection.base_cpm.CasObjectProcessor#processCas(CAS)
+   */
+  public void processCas(CAS aCAS) throws ResourceProcessException {
+    long start = System.nanoTime();
+    RecordBuffer buffer = mBuffer;
+    buffer.reset();
+    buffer.deflater.reset();
+    try {
+      DeflaterOutputStream deflated = new DeflaterOutputStream(buffer, buffer.deflater, 8192);
+      Serialization.serializeCAS(aCAS, deflated);
+      deflated.finish();
+      output.write(buffer.array(), buffer.size());
+    } catch (IOException e) {
+      throw new ResourceProcessException(e);
+    }
+    // the record and its length prefix
+    mBytesWritten.addAndGet(buffer.size() + 4);
+    long end = System.nanoTime();
+    mMetrics.recordLatency(end - start);
+    CasTrace.span(STAGE, aCAS, start, end);
+  }
+
+  /**
+   * Write out the records of the batch.
+   * 
+   * @param aTrace  
+   *           ProcessTrace object that will log events in this method.
+   * @throws ResourceProcessException
+   *           if there is an error in processing the Resource
+   * @throws IOException
+   *           if there is an IO Error
+   * @see org.apache.uima.collection.CasConsumer#batchProcessComplete(ProcessTrace)
+   */
+  public void batchProcessComplete(ProcessTrace aTrace) throws ResourceProcessException,
+          IOException {
+    output.flush();
+    mFlushes.incrementAndGet();
+  }
+
+  /**
+   * Called when the entire collection is completed.
+   * 
+   * @param aTrace
+   *           ProcessTrace object that will log events in this method.
+   * @throws ResourceProcessException
+   *           if there is an error in processing the Resource
+   * @throws IOException
+   *           if there is an IO Error
+   * @see org.apache.uima.collection.CasConsumer#collectionProcessComplete(ProcessTrace)
+   */
+  public void collectionProcessComplete(ProcessTrace aTrace) throws ResourceProcessException,
+          IOException {
+    if (output != null) {
+      getUimaContext().getLogger().log(Level.INFO,
+              "Binary CAS output: " + output.getRecords() + " CASes written");
+    }
+    releaseOutput();
+  }
+
+  /**
+   * Give up this replica's reference to the segments; the last replica closes them.
+   */
+  private synchronized void releaseOutput() throws IOException {
+    if (output != null) {
+      CasSegmentOutput released = output;
+      output = null;
+      released.release();
+    }
+  }
+
+  /**
+   * Called if clean up is needed in case of exit under error conditions.
+   * 
+   * @see org.apache.uima.resource.Resource#destroy()
+   */
+  public void destroy() {
+    try {
+      releaseOutput();
+    } catch (IOException e) {
+      // ignore IOException on destroy
+    }
+  }
+}
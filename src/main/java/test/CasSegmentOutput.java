@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rolling segment files of serialized CASes. <br>
+ * A segment starts with {@link #MAGIC} and holds records of a length followed by that many bytes;
+ * when a segment reaches the segment size, the next record starts a new one. Segments are named
+ * so that they sort in the order they were written. All replicas of a consumer writing to the
+ * same directory share one instance, obtained with {@link #acquire(File, long)} and returned with
+ * {@link #release()}; records are serialized by the callers and only appended under the lock.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class CasSegmentOutput {
+  /**
+   * First int of every segment, "GNC1".
+   */
+  public static final int MAGIC = 0x474e4331;
+
+  /**
+   * Extension of the segment files.
+   */
+  public static final String SUFFIX = ".cas";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final Map<File, CasSegmentOutput> OPEN = new HashMap<File, CasSegmentOutput>();
+
+  private final File mDirectory;
+
+  private final long mSegmentSize;
+
+  private DataOutputStream mOut;
+
+  /**
+   * Bytes written to the current segment. DataOutputStream.size() stops at Integer.MAX_VALUE, so
+   * segments of 2 GB or more are measured here.
+   */
+  private long mSegmentLength;
+
+  private int mSegments;
+
+  private long mRecords;
+
+  private int mReferences;
+
+  private CasSegmentOutput(File directory, long segmentSize) {
+    mDirectory = directory;
+    mSegmentSize = segmentSize;
+  }
+
+  /**
+   * Get the shared output of a directory. Segments already in the directory are replaced.
+   *
+   * @param directory    the directory of the segments; it is created if missing
+   * @param segmentSize  size in bytes after which a new segment is started
+   * @return               the shared output
+   * @throws IOException  if the directory cannot be created or cleared
+   */
+  public static CasSegmentOutput acquire(File directory, long segmentSize) throws IOException {
+    File key = directory.getCanonicalFile();
+    synchronized (OPEN) {
+      CasSegmentOutput output = OPEN.get(key);
+      if (output == null) {
+        if (!key.isDirectory() && !key.mkdirs()) {
+          throw new IOException("Cannot create " + key);
+        }
+        File[] old = key.listFiles();
+        for (int i = 0; i < old.length; i++) {
+          if (old[i].getName().endsWith(SUFFIX) && !old[i].delete()) {
+            throw new IOException("Cannot delete " + old[i]);
+          }
+        }
+        output = new CasSegmentOutput(key, segmentSize);
+        OPEN.put(key, output);
+      }
+      output.mReferences++;
+      return output;
+    }
+  }
+
+  /**
+   * Give up this replica's reference; the last reference closes the current segment.
+   *
+   * @throws IOException  if the segment cannot be closed
+   */
+  public void release() throws IOException {
+    synchronized (OPEN) {
+      if (--mReferences > 0) {
+        return;
+      }
+      OPEN.remove(mDirectory);
+    }
+    synchronized (this) {
+      if (mOut != null) {
+        mOut.close();
+        mOut = null;
+      }
+    }
+  }
+
+  /**
+   * @param n  number of a segment, from 0
+   * @return     the name of its file
+   */
+  public static String segmentName(int n) {
+    return "cas-" + String.format("%05d", Integer.valueOf(n)) + SUFFIX;
+  }
+
+  /**
+   * Append a record, starting a new segment first if the current one is full.
+   *
+   * @param record  bytes of the record
+   * @param length  number of bytes used in record
+   * @throws IOException  if the segment cannot be written
+   */
+  public synchronized void write(byte[] record, int length) throws IOException {
+    if (mOut == null || mSegmentLength >= mSegmentSize) {
+      if (mOut != null) {
+        mOut.close();
+      }
+      mOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(
+              mDirectory, segmentName(mSegments++))), BUFFER_SIZE));
+      mOut.writeInt(MAGIC);
+      mSegmentLength = 4;
+    }
+    mOut.writeInt(length);
+    mOut.write(record, 0, length);
+    mSegmentLength += 4 + length;
+    mRecords++;
+  }
+
+  /**
+   * Write out the buffered records, so a reader started now sees every complete record.
+   *
+   * @throws IOException  if the segment cannot be written
+   */
+  public synchronized void flush() throws IOException {
+    if (mOut != null) {
+      mOut.flush();
+    }
+  }
+
+  /**
+   * @return    the number of records written
+   */
+  public synchronized long getRecords() {
+    return mRecords;
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.uima.cas.CAS;
+
+/**
+ * Binary trace of the time every CAS spends in every stage of the pipeline. <br>
+ * While a trace is open, the collection reader names each CAS it fills with
+ * {@link #document(CAS, String, long, long)}, and every CAS processor stamps the start and end
+ * of its work on a CAS with {@link #span(String, CAS, long, long)}. A CAS is followed through the
+ * pipeline by the identity of its default view, which the CAS pool reuses, so the reader assigns
+ * a new document number each time it fills it. When no trace is open both calls return after
+ * reading one volatile field. <br>
+ * The file starts with {@link #MAGIC}, followed by records of a tag byte and
+ * <ul>
+ * <li> {@link #DOCUMENT} : document number (int), name (UTF).</li>
+ * <li> {@link #STAGE} : stage number (byte), name (UTF), written before its first span.</li>
+ * <li> {@link #SPAN} : document number (int), stage number (byte), start in nanoseconds since
+ * the trace was opened (long), duration in nanoseconds (long).</li>
+ * </ul>
+ * The reader is a stage like the others, so the time a CAS waits between stages is the part of
+ * its end-to-end time not covered by spans. TraceSummary lists the slowest documents and stages
+ * of a trace.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class CasTrace {
+  /**
+   * First int of a trace file, "GNT1".
+   */
+  public static final int MAGIC = 0x474e5431;
+
+  public static final byte DOCUMENT = 1;
+
+  public static final byte STAGE = 2;
+
+  public static final byte SPAN = 3;
+
+  /**
+   * Name of the reader stage.
+   */
+  public static final String READER = "CollectionReader";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static volatile CasTrace sActive;
+
+  private final File mFile;
+
+  private final DataOutputStream mOut;
+
+  private final long mOrigin;
+
+  private final AtomicInteger mDocuments = new AtomicInteger();
+
+  /**
+   * Document number of each CAS, by its default view.
+   */
+  private final ConcurrentHashMap<CAS, Integer> mCasDocuments =
+          new ConcurrentHashMap<CAS, Integer>();
+
+  private final ConcurrentHashMap<String, Integer> mStages = new ConcurrentHashMap<String, Integer>();
+
+  private IOException mError;
+
+  private CasTrace(File file) throws IOException {
+    mFile = file;
+    mOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    mOut.writeInt(MAGIC);
+    mOrigin = System.nanoTime();
+  }
+
+  /**
+   * Start tracing to a file, replacing the trace open so far, if any.
+   *
+   * @param file  the trace file
+   * @throws IOException  if the file cannot be created
+   */
+  public static synchronized void open(File file) throws IOException {
+    close();
+    sActive = new CasTrace(file);
+  }
+
+  /**
+   * Stop tracing and close the trace file.
+   *
+   * @throws IOException  if writing the trace failed
+   */
+  public static synchronized void close() throws IOException {
+    CasTrace trace = sActive;
+    if (trace == null) {
+      return;
+    }
+    sActive = null;
+    synchronized (trace) {
+      try {
+        trace.mOut.close();
+      } catch (IOException e) {
+        if (trace.mError == null) {
+          trace.mError = e;
+        }
+      }
+      if (trace.mError != null) {
+        throw trace.mError;
+      }
+    }
+  }
+
+  /**
+   * @return    true while a trace is open
+   */
+  public static boolean isEnabled() {
+    return sActive != null;
+  }
+
+  /**
+   * @return    the open trace file, or null
+   */
+  public static File getFile() {
+    CasTrace trace = sActive;
+    return (trace == null) ? null : trace.mFile;
+  }
+
+  /**
+   * Give a new document number to a CAS the reader has just filled, and record the reader span.
+   *
+   * @param cas    the CAS, after its document text is set
+   * @param name   the document name, such as its file and offset
+   * @param start  nanoTime when the reader started filling the CAS
+   * @param end    nanoTime when it was done
+   */
+  public static void document(CAS cas, String name, long start, long end) {
+    CasTrace trace = sActive;
+    if (trace == null) {
+      return;
+    }
+    int document = trace.mDocuments.getAndIncrement();
+    trace.mCasDocuments.put(key(cas), Integer.valueOf(document));
+    trace.writeDocument(document, name);
+    trace.writeSpan(document, trace.stage(READER), start, end);
+  }
+
+  /**
+   * Record the work of a stage on a CAS named by the reader.
+   *
+   * @param stage  the stage name
+   * @param cas    the CAS
+   * @param start  nanoTime when the stage started on the CAS
+   * @param end    nanoTime when it was done
+   */
+  public static void span(String stage, CAS cas, long start, long end) {
+    CasTrace trace = sActive;
+    if (trace == null) {
+      return;
+    }
+    Integer document = trace.mCasDocuments.get(key(cas));
+    if (document != null) {
+      trace.writeSpan(document.intValue(), trace.stage(stage), start, end);
+    }
+  }
+
+  /**
+   * The default view identifies a CAS whichever view a component is given.
+   */
+  private static CAS key(CAS cas) {
+    return cas.getView(CAS.NAME_DEFAULT_SOFA);
+  }
+
+  private int stage(String name) {
+    Integer stage = mStages.get(name);
+    if (stage != null) {
+      return stage.intValue();
+    }
+    synchronized (this) {
+      stage = mStages.get(name);
+      if (stage == null) {
+        stage = Integer.valueOf(mStages.size());
+        try {
+          mOut.writeByte(STAGE);
+          mOut.writeByte(stage.intValue());
+          mOut.writeUTF(name);
+        } catch (IOException e) {
+          mError = e;
+        }
+        mStages.put(name, stage);
+      }
+      return stage.intValue();
+    }
+  }
+
+  private synchronized void writeDocument(int document, String name) {
+    if (mError != null) {
+      return;
+    }
+    try {
+      mOut.writeByte(DOCUMENT);
+      mOut.writeInt(document);
+      mOut.writeUTF(name);
+    } catch (IOException e) {
+      mError = e;
+    }
+  }
+
+  private synchronized void writeSpan(int document, int stage, long start, long end) {
+    if (mError != null) {
+      return;
+    }
+    try {
+      mOut.writeByte(SPAN);
+      mOut.writeInt(document);
+      mOut.writeByte(stage);
+      mOut.writeLong(start - mOrigin);
+      mOut.writeLong(end - start);
+    } catch (IOException e) {
+      mError = e;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+/**
+ * Tagger passing to an expensive tagger only the sentences with gene-like features. <br>
+ * A sentence scores, for each of its space separated tokens,
+ * <ul>
+ * <li> {@link #MIXED_WEIGHT} if the token mixes letters and digits, as in "p53" or "IL-2";</li>
+ * <li> {@link #CAPITAL_WEIGHT} otherwise, if it has an upper case letter after its first
+ * character, as in "TNF" or "NFkB";</li>
+ * </ul>
+ * and {@link #LEXICON_WEIGHT} for each name of the lexicon it contains, if a lexicon is given. A
+ * sentence scoring less than the threshold is skipped: it gets no mentions. Lowering the threshold
+ * trades throughput for recall; 1 skips only sentences without any of these features. The token
+ * scan stops as soon as the threshold is reached, and the lexicon is only consulted when the
+ * tokens alone do not reach it. The threshold is a cut-off on this score, not derived from a
+ * recall target. <br>
+ * In audit mode the skipped sentences are tagged anyway, and the mentions found in them are
+ * counted as lost, without being returned. These are mentions of the wrapped tagger: a skipped
+ * mention the tagger would have got wrong is counted too, and a gold mention it would have missed
+ * is not.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class CascadeGeneTagger implements GeneTagger {
+  public static final int MIXED_WEIGHT = 2;
+
+  public static final int CAPITAL_WEIGHT = 1;
+
+  public static final int LEXICON_WEIGHT = 2;
+
+  private static final int[] NO_SPANS = new int[0];
+
+  private final GeneTagger mTagger;
+
+  private final DictionaryGeneTagger mLexicon;
+
+  private final int mThreshold;
+
+  private final boolean mAudit;
+
+  private long mPassed;
+
+  private long mSkipped;
+
+  private long mLost;
+
+  /**
+   * @param tagger     the expensive tagger
+   * @param lexicon    names scoring {@link #LEXICON_WEIGHT} each, or null
+   * @param threshold  minimum score of a sentence passed to the tagger, a score cut-off
+   * @param audit      tag the skipped sentences to count the tagger mentions lost
+   */
+  public CascadeGeneTagger(GeneTagger tagger, DictionaryGeneTagger lexicon, int threshold,
+          boolean audit) {
+    mTagger = tagger;
+    mLexicon = lexicon;
+    mThreshold = threshold;
+    mAudit = audit;
+  }
+
+  /**
+   * @see test.GeneTagger#tag(String)
+   */
+  public int[] tag(String sentence) {
+    if (score(sentence) >= mThreshold) {
+      mPassed++;
+      return mTagger.tag(sentence);
+    }
+    mSkipped++;
+    if (mAudit) {
+      mLost += mTagger.tag(sentence).length / STRIDE;
+    }
+    return NO_SPANS;
+  }
+
+  /**
+   * Score a sentence, stopping once the threshold is reached.
+   *
+   * @param sentence  the sentence
+   * @return            its score, or any value not below the threshold
+   */
+  int score(String sentence) {
+    int score = 0;
+    int length = sentence.length();
+    int i = 0;
+    while (i < length && score < mThreshold) {
+      while (i < length && sentence.charAt(i) == ' ') {
+        i++;
+      }
+      int tokenStart = i;
+      boolean letter = false;
+      boolean digit = false;
+      boolean innerCapital = false;
+      for (; i < length; i++) {
+        char c = sentence.charAt(i);
+        if (c == ' ') {
+          break;
+        }
+        if (c >= '0' && c <= '9') {
+          digit = true;
+        } else if (Character.isLetter(c)) {
+          letter = true;
+          if (i > tokenStart && Character.isUpperCase(c)) {
+            innerCapital = true;
+          }
+        }
+      }
+      if (letter && digit) {
+        score += MIXED_WEIGHT;
+      } else if (innerCapital) {
+        score += CAPITAL_WEIGHT;
+      }
+    }
+    if (score < mThreshold && mLexicon != null) {
+      score += LEXICON_WEIGHT * (mLexicon.tag(sentence).length / STRIDE);
+    }
+    return score;
+  }
+
+  /**
+   * @return    the number of sentences passed to the tagger
+   */
+  public long getPassed() {
+    return mPassed;
+  }
+
+  /**
+   * @return    the number of sentences skipped
+   */
+  public long getSkipped() {
+    return mSkipped;
+  }
+
+  /**
+   * @return    the number of mentions found in skipped sentences, in audit mode
+   */
+  public long getLost() {
+    return mLost;
+  }
+
+  /**
+   * @return    true in audit mode
+   */
+  public boolean isAudit() {
+    return mAudit;
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Bounded cache from sentence text to the chunk spans found in it. <br>
+ * The mentions of a sentence are stored as returned by its {@link GeneTagger}, so a hit rebuilds
+ * the same annotations without decoding the sentence again. Two eviction policies are available:
+ * least recently used and least frequently used, the latter evicting the least recently used of
+ * the entries with the lowest count. Both are constant time per operation. An instance is not
+ * thread-safe; every annotator replica owns one.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public abstract class ChunkCache {
+  /**
+   * Name of the least recently used policy.
+   */
+  public static final String LRU = "LRU";
+
+  /**
+   * Name of the least frequently used policy.
+   */
+  public static final String LFU = "LFU";
+
+  protected final int mCapacity;
+
+  private long mHits;
+
+  private long mMisses;
+
+  protected ChunkCache(int capacity) {
+    mCapacity = capacity;
+  }
+
+  /**
+   * Create a cache.
+   *
+   * @param policy    {@link #LRU} or {@link #LFU}
+   * @param capacity  maximum number of sentences kept
+   * @return            the cache
+   * @throws IllegalArgumentException  if the policy is unknown or the capacity not positive
+   */
+  public static ChunkCache create(String policy, int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+    }
+    if (LRU.equalsIgnoreCase(policy)) {
+      return new Lru(capacity);
+    }
+    if (LFU.equalsIgnoreCase(policy)) {
+      return new Lfu(capacity);
+    }
+    throw new IllegalArgumentException("Unknown cache policy: " + policy);
+  }
+
+  /**
+   * Look up the spans of a sentence, counting a hit or a miss.
+   *
+   * @param sentence  the sentence text
+   * @return            the spans, or null if the sentence is not cached
+   */
+  public int[] get(String sentence) {
+    int[] spans = lookup(sentence);
+    if (spans == null) {
+      mMisses++;
+    } else {
+      mHits++;
+    }
+    return spans;
+  }
+
+  /**
+   * Cache the spans of a sentence, evicting an entry if the cache is full.
+   *
+   * @param sentence  the sentence text
+   * @param spans     its chunk spans
+   */
+  public abstract void put(String sentence, int[] spans);
+
+  /**
+   * @return    the number of cached sentences
+   */
+  public abstract int size();
+
+  protected abstract int[] lookup(String sentence);
+
+  public long getHits() {
+    return mHits;
+  }
+
+  public long getMisses() {
+    return mMisses;
+  }
+
+  /**
+   * @return    hits divided by lookups
+   */
+  public double getHitRate() {
+    long lookups = mHits + mMisses;
+    return (lookups == 0) ? 0.0 : ((double) mHits) / lookups;
+  }
+
+  /**
+   * Least recently used eviction on an access ordered LinkedHashMap.
+   */
+  private static class Lru extends ChunkCache {
+    private final LinkedHashMap<String, int[]> mEntries;
+
+    Lru(final int capacity) {
+      super(capacity);
+      mEntries = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+          return size() > capacity;
+        }
+      };
+    }
+
+    protected int[] lookup(String sentence) {
+      return mEntries.get(sentence);
+    }
+
+    public void put(String sentence, int[] spans) {
+      mEntries.put(sentence, spans);
+    }
+
+    public int size() {
+      return mEntries.size();
+    }
+  }
+
+  /**
+   * Least frequently used eviction. Entries are kept in insertion ordered sets by use count, and
+   * the lowest count in use is tracked, so lookups and evictions do not search.
+   */
+  private static class Lfu extends ChunkCache {
+    private static class Entry {
+      final int[] spans;
+
+      int count = 1;
+
+      Entry(int[] spans) {
+        this.spans = spans;
+      }
+    }
+
+    private final Map<String, Entry> mEntries = new HashMap<String, Entry>();
+
+    private final Map<Integer, LinkedHashSet<String>> mByCount =
+            new HashMap<Integer, LinkedHashSet<String>>();
+
+    private int mMinCount;
+
+    Lfu(int capacity) {
+      super(capacity);
+    }
+
+    protected int[] lookup(String sentence) {
+      Entry entry = mEntries.get(sentence);
+      if (entry == null) {
+        return null;
+      }
+      LinkedHashSet<String> keys = mByCount.get(Integer.valueOf(entry.count));
+      keys.remove(sentence);
+      if (keys.isEmpty()) {
+        mByCount.remove(Integer.valueOf(entry.count));
+        if (mMinCount == entry.count) {
+          mMinCount++;
+        }
+      }
+      entry.count++;
+      keysWithCount(entry.count).add(sentence);
+      return entry.spans;
+    }
+
+    public void put(String sentence, int[] spans) {
+      if (mEntries.containsKey(sentence)) {
+        return;
+      }
+      if (mEntries.size() >= mCapacity) {
+        LinkedHashSet<String> keys = mByCount.get(Integer.valueOf(mMinCount));
+        Iterator<String> it = keys.iterator();
+        mEntries.remove(it.next());
+        it.remove();
+        if (keys.isEmpty()) {
+          mByCount.remove(Integer.valueOf(mMinCount));
+        }
+      }
+      mEntries.put(sentence, new Entry(spans));
+      keysWithCount(1).add(sentence);
+      mMinCount = 1;
+    }
+
+    public int size() {
+      return mEntries.size();
+    }
+
+    private LinkedHashSet<String> keysWithCount(int count) {
+      Integer key = Integer.valueOf(count);
+      LinkedHashSet<String> keys = mByCount.get(key);
+      if (keys == null) {
+        keys = new LinkedHashSet<String>();
+        mByCount.put(key, keys);
+      }
+      return keys;
+    }
+  }
+}
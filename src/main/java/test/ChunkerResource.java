@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import com.aliasi.chunk.Chunker;
+
+/**
+ * Interface of the external resource holding the LingPipe chunker used by the GeneNameAnnotator.
+ * <br>
+ * The resource is declared once in the descriptor and the UIMA ResourceManager hands the same
+ * instance to every annotator replica, so the model is deserialized only once per JVM.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public interface ChunkerResource {
+
+  /**
+   * Get the chunker loaded from the model file.
+   *
+   * @return   the shared, read-only chunker
+   */
+  public Chunker getChunker();
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+
+import org.apache.uima.resource.DataResource;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.SharedResourceObject;
+
+import com.aliasi.chunk.Chunker;
+
+/**
+ * Shared resource that deserializes a compiled LingPipe chunker (e.g.
+ * <code>ne-en-bio-genetag.HmmChunker</code>) from the data resource bound in the descriptor.
+ * <br>
+ * The compiled HMM chunker has no decoding caches, so after loading it is only read and can be
+ * used concurrently by all processing threads.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class ChunkerResource_impl implements ChunkerResource, SharedResourceObject {
+  private Chunker mChunker;
+
+  /**
+   * Called by the ResourceManager once, when the resource is first requested.
+   *
+   * @param aData  the data resource pointing to the serialized chunker
+   * @throws ResourceInitializationException  if the model cannot be read
+   * @see org.apache.uima.resource.SharedResourceObject#load(DataResource)
+   */
+  public void load(DataResource aData) throws ResourceInitializationException {
+    try {
+      mChunker = readChunker(aData.getInputStream());
+    } catch (IOException e) {
+      throw new ResourceInitializationException(e);
+    }
+  }
+
+  /**
+   * @see test.ChunkerResource#getChunker()
+   */
+  public Chunker getChunker() {
+    return mChunker;
+  }
+
+  /**
+   * Read a chunker from a model file. Used when no shared resource is bound to the annotator.
+   *
+   * @param modelFile  the serialized chunker
+   * @return             the deserialized chunker
+   * @throws ResourceInitializationException  if the model cannot be read
+   */
+  public static Chunker readChunker(File modelFile) throws ResourceInitializationException {
+    try {
+      return readChunker(new FileInputStream(modelFile));
+    } catch (IOException e) {
+      throw new ResourceInitializationException(e);
+    }
+  }
+
+  /**
+   * Deserialize a chunker from the stream, which is closed afterwards.
+   */
+  private static Chunker readChunker(InputStream in) throws ResourceInitializationException {
+    ObjectInputStream objIn = null;
+    try {
+      objIn = new ObjectInputStream(new BufferedInputStream(in));
+      return (Chunker) objIn.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new ResourceInitializationException(e);
+    } catch (IOException e) {
+      throw new ResourceInitializationException(e);
+    } finally {
+      try {
+        if (objIn != null) {
+          objIn.close();
+        } else {
+          in.close();
+        }
+      } catch (IOException e) {
+        // ignore IOException on close
+      }
+    }
+  }
+}
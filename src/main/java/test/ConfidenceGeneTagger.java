@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.util.Iterator;
+
+import com.aliasi.chunk.Chunk;
+import com.aliasi.chunk.ConfidenceChunker;
+
+/**
+ * Tagger keeping the confident chunks among the n best of a LingPipe confidence chunker. <br>
+ * The chunks come from {@link ConfidenceChunker#nBestChunks(char[], int, int, int)} in decreasing
+ * order of score, the base 2 logarithm of the probability of the chunk given the sentence. They
+ * are taken while that probability is at least the threshold, skipping any chunk that overlaps a
+ * more probable one, and returned with it as their confidence. A smaller n decodes faster but
+ * can miss chunks above the threshold.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class ConfidenceGeneTagger implements GeneTagger {
+  private static final int[] NO_SPANS = new int[0];
+
+  private final ConfidenceChunker mChunker;
+
+  private final int mMaxNBest;
+
+  private final double mThreshold;
+
+  private char[] mChars = new char[256];
+
+  private int[] mScratch = new int[STRIDE * 8];
+
+  /**
+   * @param chunker    the chunker; it is shared, and must allow concurrent use
+   * @param maxNBest   number of chunks decoded per sentence
+   * @param threshold  minimum probability of a chunk kept
+   */
+  public ConfidenceGeneTagger(ConfidenceChunker chunker, int maxNBest, double threshold) {
+    mChunker = chunker;
+    mMaxNBest = maxNBest;
+    mThreshold = threshold;
+  }
+
+  /**
+   * @see test.GeneTagger#tag(String)
+   */
+  public int[] tag(String sentence) {
+    int length = sentence.length();
+    if (mChars.length < length) {
+      mChars = new char[Math.max(length, 2 * mChars.length)];
+    }
+    sentence.getChars(0, length, mChars, 0);
+    Iterator<Chunk> it = mChunker.nBestChunks(mChars, 0, length, mMaxNBest);
+    int n = 0;
+    while (it.hasNext()) {
+      Chunk c = it.next();
+      double confidence = Math.pow(2.0, c.score());
+      if (confidence < mThreshold) {
+        break;
+      }
+      // insert in start order unless it overlaps a more probable chunk
+      int at = 0;
+      while (at < n && mScratch[at] < c.start()) {
+        at += STRIDE;
+      }
+      if ((at > 0 && mScratch[at - STRIDE + 1] > c.start())
+              || (at < n && mScratch[at] < c.end())) {
+        continue;
+      }
+      if (n + STRIDE > mScratch.length) {
+        int[] grown = new int[2 * mScratch.length];
+        System.arraycopy(mScratch, 0, grown, 0, n);
+        mScratch = grown;
+      }
+      System.arraycopy(mScratch, at, mScratch, at + STRIDE, n - at);
+      mScratch[at] = c.start();
+      mScratch[at + 1] = c.end();
+      mScratch[at + 2] = (int) Math.round(confidence * CONFIDENCE_SCALE);
+      n += STRIDE;
+    }
+    if (n == 0) {
+      return NO_SPANS;
+    }
+    int[] spans = new int[n];
+    System.arraycopy(mScratch, 0, spans, 0, n);
+    return spans;
+  }
+}
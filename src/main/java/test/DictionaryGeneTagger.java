@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tagger matching the names of a gene lexicon with an Aho-Corasick automaton. <br>
+ * The cost of a scan grows with the sentence, not with the number of names in the lexicon. A
+ * match counts only if it starts and ends on a word boundary, that is next to a character that is
+ * not a letter or digit or at the ends of the sentence; of overlapping matches the leftmost, then
+ * the longest, is kept. A match is only kept once no match starting at or before it can still be
+ * found, so after each mention the scan goes back to its end, by at most the length of a name.
+ * <br>
+ * The automaton is stored in flat arrays: the transitions of each state are a sorted range of
+ * <code>mLabels</code> and <code>mTargets</code>, searched by bisection. The scan allocates
+ * nothing but the returned array, in which every mention has confidence 1, and keeps the spans in
+ * a scratch buffer, so an instance must not be used by two threads at once.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class DictionaryGeneTagger implements GeneTagger {
+  private static final int[] NO_SPANS = new int[0];
+
+  /**
+   * Transitions of state s are mLabels/mTargets[mFirstEdge[s], mFirstEdge[s + 1]).
+   */
+  private final int[] mFirstEdge;
+
+  private final char[] mLabels;
+
+  private final int[] mTargets;
+
+  /**
+   * State reached on the longest proper suffix of the state's string that is in the trie.
+   */
+  private final int[] mFail;
+
+  /**
+   * Length of the name ending at the state, or 0.
+   */
+  private final int[] mLength;
+
+  /**
+   * Length of the string spelled by the state.
+   */
+  private final int[] mDepth;
+
+  /**
+   * Nearest state on the fail chain whose length is not 0, or -1.
+   */
+  private final int[] mOutput;
+
+  private final int mNames;
+
+  private int[] mScratch = new int[32];
+
+  /**
+   * Build the automaton of a lexicon.
+   *
+   * @param names  the gene names
+   */
+  public DictionaryGeneTagger(Iterable<String> names) {
+    // trie with sorted children, states numbered in creation order
+    List<TreeMap<Character, Integer>> children = new ArrayList<TreeMap<Character, Integer>>();
+    List<Integer> lengths = new ArrayList<Integer>();
+    children.add(new TreeMap<Character, Integer>());
+    lengths.add(Integer.valueOf(0));
+    int count = 0;
+    for (String name : names) {
+      if (name.length() == 0) {
+        continue;
+      }
+      int state = 0;
+      for (int i = 0; i < name.length(); i++) {
+        Character c = Character.valueOf(name.charAt(i));
+        Integer next = children.get(state).get(c);
+        if (next == null) {
+          next = Integer.valueOf(children.size());
+          children.add(new TreeMap<Character, Integer>());
+          lengths.add(Integer.valueOf(0));
+          children.get(state).put(c, next);
+        }
+        state = next.intValue();
+      }
+      if (lengths.get(state).intValue() == 0) {
+        count++;
+      }
+      lengths.set(state, Integer.valueOf(name.length()));
+    }
+    mNames = count;
+
+    int states = children.size();
+    mFirstEdge = new int[states + 1];
+    mLabels = new char[states - 1];
+    mTargets = new int[states - 1];
+    mLength = new int[states];
+    int edge = 0;
+    for (int s = 0; s < states; s++) {
+      mFirstEdge[s] = edge;
+      mLength[s] = lengths.get(s).intValue();
+      for (Map.Entry<Character, Integer> e : children.get(s).entrySet()) {
+        mLabels[edge] = e.getKey().charValue();
+        mTargets[edge] = e.getValue().intValue();
+        edge++;
+      }
+    }
+    mFirstEdge[states] = edge;
+
+    // fail and output links, breadth first
+    mFail = new int[states];
+    mOutput = new int[states];
+    mDepth = new int[states];
+    mOutput[0] = -1;
+    int[] queue = new int[states];
+    int head = 0;
+    int tail = 0;
+    for (int e = mFirstEdge[0]; e < mFirstEdge[1]; e++) {
+      mFail[mTargets[e]] = 0;
+      mOutput[mTargets[e]] = -1;
+      mDepth[mTargets[e]] = 1;
+      queue[tail++] = mTargets[e];
+    }
+    while (head < tail) {
+      int s = queue[head++];
+      for (int e = mFirstEdge[s]; e < mFirstEdge[s + 1]; e++) {
+        int t = mTargets[e];
+        int f = mFail[s];
+        int next;
+        while ((next = transition(f, mLabels[e])) == -1 && f != 0) {
+          f = mFail[f];
+        }
+        mFail[t] = (next == -1) ? 0 : next;
+        mOutput[t] = (mLength[mFail[t]] > 0) ? mFail[t] : mOutput[mFail[t]];
+        mDepth[t] = mDepth[s] + 1;
+        queue[tail++] = t;
+      }
+    }
+  }
+
+  /**
+   * Read a lexicon file. A line is either a name, or a line of the gold standard format
+   * <code>ID|begin end|name</code>, whose last field is taken.
+   *
+   * @param file  the lexicon file
+   * @return        the tagger
+   * @throws IOException  if the file cannot be read
+   */
+  public static DictionaryGeneTagger load(File file) throws IOException {
+    List<String> names = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+            "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String name = line.substring(line.lastIndexOf('|') + 1).trim();
+        if (name.length() > 0) {
+          names.add(name);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return new DictionaryGeneTagger(names);
+  }
+
+  /**
+   * @return    the number of distinct names in the lexicon
+   */
+  public int size() {
+    return mNames;
+  }
+
+  /**
+   * @see test.GeneTagger#tag(String)
+   */
+  public int[] tag(String sentence) {
+    int n = 0;
+    // the leftmost-longest candidate not yet emitted
+    int pendingStart = -1;
+    int pendingEnd = -1;
+    int state = 0;
+    int end = 0;
+    while (true) {
+      // the text since end - mDepth[state] is the only part of the scan a match may still start in
+      if (pendingStart != -1
+              && (end == sentence.length() || end - mDepth[state] > pendingStart)) {
+        n = emit(n, pendingStart, pendingEnd);
+        // scan again from the end of the candidate, where matches no longer overlap it
+        end = pendingEnd;
+        state = 0;
+        pendingStart = -1;
+      }
+      if (end == sentence.length()) {
+        break;
+      }
+      char c = sentence.charAt(end++);
+      int next;
+      while ((next = transition(state, c)) == -1 && state != 0) {
+        state = mFail[state];
+      }
+      state = (next == -1) ? 0 : next;
+      if (end < sentence.length() && Character.isLetterOrDigit(sentence.charAt(end))) {
+        continue;
+      }
+      // longest name ending here that starts on a word boundary
+      for (int s = (mLength[state] > 0) ? state : mOutput[state]; s != -1; s = mOutput[s]) {
+        int start = end - mLength[s];
+        if (start > 0 && Character.isLetterOrDigit(sentence.charAt(start - 1))) {
+          continue;
+        }
+        if (pendingStart == -1 || start <= pendingStart) {
+          // starts no later than the candidate and ends after it: longer
+          pendingStart = start;
+          pendingEnd = end;
+        }
+        break;
+      }
+    }
+    if (n == 0) {
+      return NO_SPANS;
+    }
+    int[] spans = new int[n];
+    System.arraycopy(mScratch, 0, spans, 0, n);
+    return spans;
+  }
+
+  private int emit(int n, int start, int end) {
+    if (n + STRIDE > mScratch.length) {
+      int[] grown = new int[2 * mScratch.length];
+      System.arraycopy(mScratch, 0, grown, 0, n);
+      mScratch = grown;
+    }
+    mScratch[n] = start;
+    mScratch[n + 1] = end;
+    mScratch[n + 2] = CONFIDENCE_SCALE;
+    return n + STRIDE;
+  }
+
+  /**
+   * @return    the target of the transition of state s on c, or -1
+   */
+  private int transition(int s, char c) {
+    int low = mFirstEdge[s];
+    int high = mFirstEdge[s + 1] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      char label = mLabels[mid];
+      if (label < c) {
+        low = mid + 1;
+      } else if (label > c) {
+        high = mid - 1;
+      } else {
+        return mTargets[mid];
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+/**
+ * Receiver of the items handled by a pipeline stage: the next {@link StagePool}, or whatever
+ * takes the items back at the end of the pipeline.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public interface Downstream<T> {
+  /**
+   * Take an item, blocking while there is no room for it.
+   *
+   * @param item  the item
+   * @throws InterruptedException  if interrupted while blocked, or the pipeline failed
+   */
+  void put(T item) throws InterruptedException;
+
+  /**
+   * Called once no more items will be put.
+   */
+  void finishInput();
+}
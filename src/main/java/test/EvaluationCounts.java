@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+/**
+ * Evaluation counters. <br>
+ * Micro-averaged scores come from the true positive, false positive and false negative counts.
+ * Macro-averaged precision is the mean over the sentences with at least one annotation, and
+ * macro-averaged recall the mean over the sentences with at least one standard mention. <br>
+ * The counters are not synchronized: each consumer replica adds to its own instances, kept by a
+ * {@link SharedEvaluation}, and the instances are merged with {@link #add(EvaluationCounts)} when a
+ * report is written.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class EvaluationCounts {
+  private long mTruePositives;
+
+  private long mFalsePositives;
+
+  private long mFalseNegatives;
+
+  private double mPrecisionSum;
+
+  private long mRetrievedSentences;
+
+  private double mRecallSum;
+
+  private long mRelevantSentences;
+
+  /**
+   * Count the result of one sentence.
+   *
+   * @param relevant   number of standard mentions in the sentence
+   * @param retrieved  number of annotations in the sentence
+   * @param correct    number of annotations that are standard mentions
+   */
+  public void addSentence(int relevant, int retrieved, int correct) {
+    mTruePositives += correct;
+    mFalsePositives += retrieved - correct;
+    mFalseNegatives += relevant - correct;
+    if (retrieved > 0) {
+      mPrecisionSum += ((double) correct) / retrieved;
+      mRetrievedSentences++;
+    }
+    if (relevant > 0) {
+      mRecallSum += ((double) correct) / relevant;
+      mRelevantSentences++;
+    }
+  }
+
+  /**
+   * Add the counts of another instance to these.
+   *
+   * @param other  the counts to add
+   */
+  public void add(EvaluationCounts other) {
+    mTruePositives += other.mTruePositives;
+    mFalsePositives += other.mFalsePositives;
+    mFalseNegatives += other.mFalseNegatives;
+    mPrecisionSum += other.mPrecisionSum;
+    mRetrievedSentences += other.mRetrievedSentences;
+    mRecallSum += other.mRecallSum;
+    mRelevantSentences += other.mRelevantSentences;
+  }
+
+  /**
+   * Reset all counters to zero.
+   */
+  public void clear() {
+    mTruePositives = mFalsePositives = mFalseNegatives = 0;
+    mPrecisionSum = mRecallSum = 0.0;
+    mRetrievedSentences = mRelevantSentences = 0;
+  }
+
+  public long getTruePositives() {
+    return mTruePositives;
+  }
+
+  public long getFalsePositives() {
+    return mFalsePositives;
+  }
+
+  public long getFalseNegatives() {
+    return mFalseNegatives;
+  }
+
+  /**
+   * @return    the number of standard mentions
+   */
+  public long getRelevant() {
+    return mTruePositives + mFalseNegatives;
+  }
+
+  /**
+   * @return    the number of annotations
+   */
+  public long getRetrieved() {
+    return mTruePositives + mFalsePositives;
+  }
+
+  public double getMicroPrecision() {
+    return ratio(getTruePositives(), getRetrieved());
+  }
+
+  public double getMicroRecall() {
+    return ratio(getTruePositives(), getRelevant());
+  }
+
+  public double getMicroFMeasure() {
+    return fMeasure(getMicroPrecision(), getMicroRecall());
+  }
+
+  public double getMacroPrecision() {
+    return mPrecisionSum / Math.max(1, mRetrievedSentences);
+  }
+
+  public double getMacroRecall() {
+    return mRecallSum / Math.max(1, mRelevantSentences);
+  }
+
+  public double getMacroFMeasure() {
+    return fMeasure(getMacroPrecision(), getMacroRecall());
+  }
+
+  private static double ratio(long numerator, long denominator) {
+    return (denominator == 0) ? 0.0 : ((double) numerator) / denominator;
+  }
+
+  private static double fMeasure(double precision, double recall) {
+    return (precision + recall == 0) ? 0.0 : 2 * precision * recall / (precision + recall);
+  }
+}
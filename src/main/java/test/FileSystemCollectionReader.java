@@ -22,10 +22,20 @@ package test;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
 import org.apache.uima.collection.CollectionException;
 import org.apache.uima.collection.CollectionReader_ImplBase;
+import org.apache.uima.examples.SourceDocumentInformation;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.DocumentAnnotation;
 import org.apache.uima.resource.ResourceConfigurationException;
@@ -41,7 +51,26 @@ import org.apache.uima.util.ProgressImpl;
  * <li><code>InputDirectory</code> - path to directory containing files</li>
  * <li><code>Encoding</code> (optional) - character encoding of the input files</li>
  * <li><code>Language</code> (optional) - language of the input documents</li>
+ * <li><code>SentencesPerCas</code> (optional) - number of sentence lines put in each CAS; 0 puts
+ * each file in a single CAS</li>
+ * <li><code>FilePatterns</code> (optional) - glob patterns, such as <code>*.in</code>, of the names
+ * of the files to read; <code>hw1.in</code> if not specified</li>
+ * <li><code>PrefetchThreads</code> (optional) - number of background threads reading upcoming
+ * files; 0 reads every file on the thread calling getNext</li>
  * </ul>
+ * The files are read in path order. With prefetch threads, up to two files per thread are read
+ * and decoded ahead, from the first call of getNext, while the CPE processes the current ones, so
+ * reading many files is not serialized on the CPE's reader thread. <br>
+ * In batch mode every CAS carries a <code>SourceDocumentInformation</code> annotation with the
+ * file URI and the offset of the batch in that file, so the sentences can be traced back to their
+ * source while several processing units work on one large input file. Its offset and size are
+ * both counted in characters of the decoded file, so they match the document text whatever the
+ * encoding: the size is the length of the batch, and the offset is -1 if it does not fit in the
+ * int feature, past 2^31 characters. A prefetched file is held whole and batched from memory.
+ * Files larger than {@link #PREFETCH_MAX_SIZE} bytes, and every file when there are no prefetch
+ * threads, are streamed through a {@link LineBatchReader} instead, so only the current batch is
+ * held in memory. While a {@link CasTrace} is open, every CAS is named after its file, and the
+ * offset of its batch in batch mode.
  * 
  * @author jacky
  * @version 1.0 14 Oct 2012
@@ -70,6 +99,30 @@ public class FileSystemCollectionReader extends CollectionReader_ImplBase {
    * the subdirectories (recursively) of the current input directory.
    */
   public static final String PARAM_SUBDIR = "BrowseSubdirectories";
+
+  /**
+   * Name of optional configuration parameter that contains the number of sentences put in each
+   * CAS. If not specified or 0, every file is put in a single CAS.
+   */
+  public static final String PARAM_BATCHSIZE = "SentencesPerCas";
+
+  /**
+   * Name of optional multi-valued configuration parameter that contains the glob patterns of the
+   * names of the files to read. <code>*</code> matches any characters and <code>?</code> one.
+   */
+  public static final String PARAM_FILEPATTERNS = "FilePatterns";
+
+  /**
+   * Name of optional configuration parameter that contains the number of prefetch threads.
+   */
+  public static final String PARAM_PREFETCHTHREADS = "PrefetchThreads";
+
+  /**
+   * Largest file, in bytes, prefetched in batch mode.
+   */
+  public static final long PREFETCH_MAX_SIZE = 16 * 1024 * 1024;
+
+  private static final String DEFAULT_FILE_PATTERN = "hw1.in";
   
   private ArrayList<File> mFiles;
 
@@ -81,6 +134,39 @@ public class FileSystemCollectionReader extends CollectionReader_ImplBase {
 
   private int mCurrentIndex;
 
+  private int mBatchSize;
+
+  private File mCurrentFile;
+
+  private LineBatchReader mLineReader;
+
+  private StringBuilder mBatch;
+
+  private Pattern mFilePattern;
+
+  private ExecutorService mPrefetcher;
+
+  /**
+   * Files read ahead, in the order of mFiles from mCurrentIndex.
+   */
+  private LinkedList<Future<String>> mPrefetched;
+
+  private int mPrefetchWindow;
+
+  private int mNextPrefetch;
+
+  /**
+   * Text of the current prefetched file in batch mode, and the offset of its next batch.
+   */
+  private String mText;
+
+  private int mTextOffset;
+
+  /**
+   * Size of the buffers used to stream the input files in batch mode.
+   */
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
   /**
    * Initialization method called by the framework when the collection reader is first created
    * 
@@ -95,7 +181,19 @@ public class FileSystemCollectionReader extends CollectionReader_ImplBase {
     if (null == mRecursive) { // could be null if not set, it is optional
       mRecursive = Boolean.FALSE;
     }
+    Integer batchSize = (Integer) getConfigParameterValue(PARAM_BATCHSIZE);
+    mBatchSize = (batchSize == null) ? 0 : batchSize.intValue();
+    String[] patterns = (String[]) getConfigParameterValue(PARAM_FILEPATTERNS);
+    if (patterns == null || patterns.length == 0) {
+      patterns = new String[] { DEFAULT_FILE_PATTERN };
+    }
+    mFilePattern = globs(patterns);
+    Integer threads = (Integer) getConfigParameterValue(PARAM_PREFETCHTHREADS);
+    int prefetchThreads = (threads == null) ? 0 : threads.intValue();
     mCurrentIndex = 0;
+    mLineReader = null;
+    mText = null;
+    mBatch = new StringBuilder();
 
     // if input directory does not exist or is not a directory, throw exception
     if (!directory.exists() || !directory.isDirectory()) {
@@ -108,6 +206,99 @@ public class FileSystemCollectionReader extends CollectionReader_ImplBase {
     // parameter PARAM_SUBDIR is set to True
     mFiles = new ArrayList<File>();
     addFilesFromDir(directory);
+    Collections.sort(mFiles);
+
+    mPrefetcher = null;
+    mPrefetched = new LinkedList<Future<String>>();
+    mNextPrefetch = 0;
+    if (prefetchThreads > 0) {
+      mPrefetchWindow = 2 * prefetchThreads;
+      mPrefetcher = Executors.newFixedThreadPool(prefetchThreads, new ThreadFactory() {
+        private int mCount;
+
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "Collection reader prefetch " + (++mCount));
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
+  /**
+   * Compile glob patterns into one regular expression matching any of them.
+   * 
+   * @param globs  the glob patterns
+   * @return         the regular expression
+   */
+  static Pattern globs(String[] globs) {
+    StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < globs.length; i++) {
+      if (i > 0) {
+        regex.append('|');
+      }
+      String glob = globs[i].trim();
+      int literal = 0;
+      for (int j = 0; j < glob.length(); j++) {
+        char c = glob.charAt(j);
+        if (c == '*' || c == '?') {
+          if (j > literal) {
+            regex.append(Pattern.quote(glob.substring(literal, j)));
+          }
+          regex.append(c == '*' ? ".*" : ".");
+          literal = j + 1;
+        }
+      }
+      if (glob.length() > literal) {
+        regex.append(Pattern.quote(glob.substring(literal)));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  /**
+   * Submit the reading of upcoming files until the window is full. Called from getNext only, so
+   * nothing is read before the collection is processed.
+   */
+  private void prefetch() {
+    while (mPrefetched.size() < mPrefetchWindow && mNextPrefetch < mFiles.size()) {
+      final File file = mFiles.get(mNextPrefetch++);
+      mPrefetched.add(mPrefetcher.submit(new Callable<String>() {
+        public String call() throws IOException {
+          if (mBatchSize > 0 && file.length() > PREFETCH_MAX_SIZE) {
+            return null;
+          }
+          return FileUtils.file2String(file, mEncoding);
+        }
+      }));
+    }
+  }
+
+  /**
+   * Take the text of the next file from the prefetch queue.
+   * 
+   * @return    the text, or null if the file is to be streamed or there are no prefetch threads
+   * @throws IOException  if the file could not be read
+   */
+  private String takePrefetched() throws IOException {
+    if (mPrefetcher == null) {
+      return null;
+    }
+    prefetch();
+    Future<String> next = mPrefetched.removeFirst();
+    try {
+      return next.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading " + mFiles.get(mCurrentIndex - 1));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause().toString());
+    } finally {
+      prefetch();
+    }
   }
   
   /**
@@ -121,7 +312,7 @@ public class FileSystemCollectionReader extends CollectionReader_ImplBase {
     File[] files = dir.listFiles();
     for (int i = 0; i < files.length; i++) {
       if (!files[i].isDirectory()) {
-        if(files[i].getName().equals("hw1.in"))mFiles.add(files[i]);
+        if(mFilePattern.matcher(files[i].getName()).matches())mFiles.add(files[i]);
       } else if (mRecursive) {
         addFilesFromDir(files[i]);
       }
@@ -135,7 +326,7 @@ public class FileSystemCollectionReader extends CollectionReader_ImplBase {
    * @see org.apache.uima.collection.CollectionReader#hasNext()
    */
   public boolean hasNext() {
-    return mCurrentIndex < mFiles.size();
+    return mLineReader != null || mText != null || mCurrentIndex < mFiles.size();
   }
 
   /**
@@ -147,6 +338,7 @@ public class FileSystemCollectionReader extends CollectionReader_ImplBase {
    * @see org.apache.uima.collection.CollectionReader#getNext(org.apache.uima.cas.CAS)
    */
   public void getNext(CAS aCAS) throws IOException, CollectionException {
+    long start = System.nanoTime();
     JCas jcas;
     try {
       jcas = aCAS.getJCas();
@@ -154,11 +346,24 @@ public class FileSystemCollectionReader extends CollectionReader_ImplBase {
       throw new CollectionException(e);
     }
 
-    // open input stream to file
-    File file = (File) mFiles.get(mCurrentIndex++);
-    String text = FileUtils.file2String(file, mEncoding);
-      // put document in CAS
-    jcas.setDocumentText(text);
+    if (mBatchSize <= 0) {
+      // open input stream to file
+      File file = (File) mFiles.get(mCurrentIndex++);
+      String text = takePrefetched();
+      if (text == null) {
+        text = FileUtils.file2String(file, mEncoding);
+      }
+        // put document in CAS
+      jcas.setDocumentText(text);
+      if (CasTrace.isEnabled()) {
+        CasTrace.document(aCAS, file.getName(), start, System.nanoTime());
+      }
+    } else {
+      long begin = getNextBatch(jcas);
+      if (CasTrace.isEnabled()) {
+        CasTrace.document(aCAS, mCurrentFile.getName() + '@' + begin, start, System.nanoTime());
+      }
+    }
 
     // set language if it was explicitly specified as a configuration parameter
     if (mLanguage != null) {
@@ -166,6 +371,81 @@ public class FileSystemCollectionReader extends CollectionReader_ImplBase {
     }
   }
 
+  /**
+   * Put the next <code>SentencesPerCas</code> lines of the current file in the CAS, moving on to
+   * the next file when the current one is exhausted.
+   * 
+   * @param jcas  the CAS populating the next batch
+   * @return        the offset of the batch in its file
+   * @throws IOException  if the next file cannot be read
+   */
+  private long getNextBatch(JCas jcas) throws IOException {
+    if (mLineReader == null && mText == null) {
+      mCurrentFile = mFiles.get(mCurrentIndex++);
+      mText = takePrefetched();
+      mTextOffset = 0;
+      if (mText == null) {
+        mLineReader = new LineBatchReader(mCurrentFile, mEncoding, READ_BUFFER_SIZE);
+      }
+    }
+    long begin;
+    boolean lastSegment;
+    if (mText != null) {
+      // batch a prefetched file from memory
+      begin = mTextOffset;
+      int end = mTextOffset;
+      for (int lines = 0; lines < mBatchSize && end < mText.length(); lines++) {
+        int newline = mText.indexOf('\n', end);
+        end = (newline == -1) ? mText.length() : newline + 1;
+      }
+      jcas.setDocumentText(mText.substring(mTextOffset, end));
+      mTextOffset = end;
+      lastSegment = end == mText.length();
+    } else {
+      begin = mLineReader.getOffset();
+      mBatch.setLength(0);
+      mLineReader.readLines(mBatchSize, mBatch);
+      jcas.setDocumentText(mBatch.toString());
+      lastSegment = !mLineReader.hasMore();
+    }
+
+    // record where this batch comes from
+    SourceDocumentInformation srcDocInfo = new SourceDocumentInformation(jcas);
+    srcDocInfo.setUri(mCurrentFile.getAbsoluteFile().toURI().toString());
+    srcDocInfo.setOffsetInSource((begin <= Integer.MAX_VALUE) ? (int) begin : -1);
+    srcDocInfo.setDocumentSize(jcas.getDocumentText().length());
+    srcDocInfo.setLastSegment(lastSegment);
+    srcDocInfo.addToIndexes();
+
+    if (lastSegment) {
+      if (mLineReader != null) {
+        mLineReader.close();
+        mLineReader = null;
+      }
+      mText = null;
+    }
+    return begin;
+  }
+
+  /**
+   * Reconfigures the parameters of this Collection Reader and starts reading the collection
+   * again from the first file.
+   * 
+   * @throws ResourceConfigurationException  if the new parameter settings are invalid
+   * @see org.apache.uima.resource.ConfigurableResource#reconfigure()
+   */
+  public void reconfigure() throws ResourceConfigurationException {
+    super.reconfigure();
+    try {
+      close();
+      initialize();
+    } catch (IOException e) {
+      throw new ResourceConfigurationException(e);
+    } catch (ResourceInitializationException e) {
+      throw new ResourceConfigurationException(e);
+    }
+  }
+
   /**
    * Close the reading process of the Collection Reader.
    * 
@@ -173,6 +453,16 @@ public class FileSystemCollectionReader extends CollectionReader_ImplBase {
    * @see org.apache.uima.collection.base_cpm.BaseCollectionReader#close()
    */
   public void close() throws IOException {
+    if (mLineReader != null) {
+      mLineReader.close();
+      mLineReader = null;
+    }
+    mText = null;
+    if (mPrefetcher != null) {
+      mPrefetcher.shutdownNow();
+      mPrefetcher = null;
+      mPrefetched.clear();
+    }
   }
 
   /**
@@ -21,24 +21,304 @@ package test;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
-import com.aliasi.chunk.Chunk;
+import org.apache.uima.resource.ResourceAccessException;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Level;
 import com.aliasi.chunk.Chunker;
-import com.aliasi.chunk.Chunking;
-import com.aliasi.util.AbstractExternalizable;
+import com.aliasi.chunk.ConfidenceChunker;
 import model.GeneName;
+import model.Sentence;
 
 /**
  * GeneNameAnnotator that detects gene names using LIngpipe tools.
+ * <br>
+ * Every input line is annotated as a {@link Sentence}, which covers the sentence text and carries
+ * its ID. A {@link GeneName} covers the characters of the mention in the document text and points
+ * to its sentence; its name is its covered text, so no string is copied into the CAS per mention.
+ * <br>
+ * The sentences are tagged by the {@link GeneTagger} selected by the <code>Backend</code>
+ * parameter:
+ * <ol>
+ * <li> "hmm" : the LingPipe HMM chunker (the default).</li>
+ * <li> "dictionary" : an Aho-Corasick automaton of the names in <code>LexiconFile</code>, which
+ * tags a sentence in one scan.</li>
+ * <li> "dictionary+hmm" : both, adding the lexicon names the HMM chunker missed.</li>
+ * </ol>
+ * With a <code>MaxNBest</code> above 0 the HMM chunker is used as a confidence chunker: of its
+ * <code>MaxNBest</code> best chunks, those with a probability of at least
+ * <code>ConfidenceThreshold</code> are kept, and the probability is set as the
+ * <code>Confidence</code> feature of the annotation. Otherwise the first-best chunking is taken
+ * and every annotation has confidence 1.
+ * <br>
+ * With a <code>CascadeThreshold</code> above 0 the tagger is preceded by a
+ * {@link CascadeGeneTagger}, which skips the sentences without gene-like features; names of
+ * <code>LexiconFile</code> count as such features. With <code>CascadeAudit</code> set, the skipped
+ * sentences are tagged anyway to count the mentions the cascade loses. The skipped and lost
+ * counts are logged at the end of the collection. The threshold is a cut-off on the feature
+ * score, not a recall target, and the lost mentions are those of the wrapped tagger, not of the
+ * gold standard: the cost in gold recall is read from the AnnotationEvaluator reports of a run
+ * with the threshold at 0 and one with the chosen threshold.
+ * <br>
+ * The chunker is taken from the shared resource bound to <code>GeneTagModel</code>, so all
+ * replicas of the annotator in a CPE use one copy of the model. If no resource is bound, the
+ * chunker is loaded once from the file given by the <code>ModelFile</code> parameter.
+ * <br>
+ * The chunk spans of each sentence are kept in a {@link ChunkCache} of
+ * <code>CacheCapacity</code> sentences with the <code>CachePolicy</code> eviction policy, so a
+ * sentence repeated in the collection, under any ID, is decoded only once. A capacity of 0
+ * disables the cache. The hit and miss counts are logged at the end of the collection.
+ * <br>
+ * If <code>AnnotationCacheFile</code> is set, the spans are also kept between runs in an
+ * {@link AnnotationStore}: a sentence whose ID and text are unchanged since the run that stored
+ * it is replayed from the store without decoding, so a re-run only decodes new and edited
+ * sentences. The store is saved at the end of the collection.
+ * <br>
+ * The latency of every sentence is recorded in the {@link StageMetrics} of the stage
+ * "GeneNameAnnotator", with the counters <code>sentences</code>, <code>chunks</code>,
+ * <code>decoded</code> and <code>modelNanos</code>, the time spent in the tagger. The counters
+ * are updated once per CAS, when the time spent on the CAS is also stamped in the
+ * {@link CasTrace}, if one is open.
  * 
  * @author jacky
  * @version 1.0 14 Oct 2012
  */
 public class GeneNameAnnotator extends JCasAnnotator_ImplBase {
+  /**
+   * Key of the optional external resource providing the shared chunker.
+   */
+  public static final String RESOURCE_MODEL = "GeneTagModel";
+
+  /**
+   * Name of configuration parameter that contains the path of the serialized chunker, used when
+   * no shared resource is bound.
+   */
+  public static final String PARAM_MODELFILE = "ModelFile";
+
+  /**
+   * Name of optional configuration parameter that contains the number of sentences cached.
+   */
+  public static final String PARAM_CACHECAPACITY = "CacheCapacity";
+
+  /**
+   * Name of optional configuration parameter that contains the cache eviction policy, LRU or LFU.
+   */
+  public static final String PARAM_CACHEPOLICY = "CachePolicy";
+
+  /**
+   * Name of optional configuration parameter that contains the file keeping the spans between
+   * runs.
+   */
+  public static final String PARAM_ANNOTATIONCACHEFILE = "AnnotationCacheFile";
+
+  /**
+   * Name of optional configuration parameter that selects the tagger: hmm, dictionary or
+   * dictionary+hmm.
+   */
+  public static final String PARAM_BACKEND = "Backend";
+
+  /**
+   * Name of configuration parameter that contains the gene lexicon of the dictionary tagger.
+   */
+  public static final String PARAM_LEXICONFILE = "LexiconFile";
+
+  /**
+   * Name of optional configuration parameter that contains the minimum feature score of a
+   * sentence to be tagged; 0 tags every sentence. It is a score cut-off, not a recall target.
+   */
+  public static final String PARAM_CASCADETHRESHOLD = "CascadeThreshold";
+
+  /**
+   * Name of optional configuration parameter that makes the cascade count the mentions the wrapped
+   * tagger finds in the skipped sentences, which is not the gold recall lost.
+   */
+  public static final String PARAM_CASCADEAUDIT = "CascadeAudit";
+
+  /**
+   * Name of optional configuration parameter that contains the number of chunks the confidence
+   * chunker decodes per sentence; 0 takes the first-best chunking.
+   */
+  public static final String PARAM_MAXNBEST = "MaxNBest";
+
+  /**
+   * Name of optional configuration parameter that contains the minimum probability of a chunk
+   * kept by the confidence chunker.
+   */
+  public static final String PARAM_CONFIDENCETHRESHOLD = "ConfidenceThreshold";
+
+  public static final String BACKEND_HMM = "hmm";
+
+  public static final String BACKEND_DICTIONARY = "dictionary";
+
+  public static final String BACKEND_UNION = "dictionary+hmm";
+
+  /**
+   * Name of the stage in the {@link StageMetrics}.
+   */
+  public static final String STAGE = "GeneNameAnnotator";
+
+  private GeneTagger mTagger;
+
+  private CascadeGeneTagger mCascade;
+
+  private ChunkCache mCache;
+
+  private AnnotationStore mStore;
+
+  private long mReplayed;
+
+  private long mDecoded;
+
+  private StageMetrics mMetrics;
+
+  private AtomicLong mSentences;
+
+  private AtomicLong mChunks;
+
+  private AtomicLong mDecodedCount;
+
+  private AtomicLong mModelNanos;
+
+  /**
+   * Create the tagger of the selected backend, the chunk cache and the annotation store.
+   * 
+   * @param aContext  the UIMA context of the annotator
+   * @throws ResourceInitializationException  if the backend is unknown or its model cannot be read
+   * @see org.apache.uima.analysis_component.AnalysisComponent_ImplBase#initialize(UimaContext)
+   */
+  public void initialize(UimaContext aContext) throws ResourceInitializationException {
+    super.initialize(aContext);
+    mMetrics = StageMetrics.get(STAGE);
+    mSentences = mMetrics.counter("sentences");
+    mChunks = mMetrics.counter("chunks");
+    mDecodedCount = mMetrics.counter("decoded");
+    mModelNanos = mMetrics.counter("modelNanos");
+    Integer capacity = (Integer) aContext.getConfigParameterValue(PARAM_CACHECAPACITY);
+    String policy = (String) aContext.getConfigParameterValue(PARAM_CACHEPOLICY);
+    mCache = null;
+    if (capacity != null && capacity.intValue() > 0) {
+      try {
+        mCache = ChunkCache.create(policy == null ? ChunkCache.LRU : policy.trim(),
+                capacity.intValue());
+      } catch (IllegalArgumentException e) {
+        throw new ResourceInitializationException(e);
+      }
+    }
+    String backend = (String) aContext.getConfigParameterValue(PARAM_BACKEND);
+    backend = (backend == null) ? BACKEND_HMM : backend.trim().toLowerCase();
+    boolean useHmm = BACKEND_HMM.equals(backend) || BACKEND_UNION.equals(backend);
+    boolean useDictionary = BACKEND_DICTIONARY.equals(backend) || BACKEND_UNION.equals(backend);
+    if (!useHmm && !useDictionary) {
+      throw new ResourceInitializationException(
+              ResourceInitializationException.RESOURCE_DATA_NOT_VALID, new Object[] { backend,
+                  PARAM_BACKEND });
+    }
+    String modelPath = (String) aContext.getConfigParameterValue(PARAM_MODELFILE);
+    String lexiconPath = (String) aContext.getConfigParameterValue(PARAM_LEXICONFILE);
+    Integer cascadeThreshold = (Integer) aContext.getConfigParameterValue(PARAM_CASCADETHRESHOLD);
+    int threshold = (cascadeThreshold == null) ? 0 : cascadeThreshold.intValue();
+    Boolean audit = (Boolean) aContext.getConfigParameterValue(PARAM_CASCADEAUDIT);
+    Integer maxNBestValue = (Integer) aContext.getConfigParameterValue(PARAM_MAXNBEST);
+    int maxNBest = (maxNBestValue == null) ? 0 : maxNBestValue.intValue();
+    Float confidenceValue = (Float) aContext.getConfigParameterValue(PARAM_CONFIDENCETHRESHOLD);
+    float confidence = (confidenceValue == null) ? 0.0f : confidenceValue.floatValue();
+    String storePath = (String) aContext.getConfigParameterValue(PARAM_ANNOTATIONCACHEFILE);
+    if (mStore != null) {
+      mStore.release();
+      mStore = null;
+    }
+    if (storePath != null && storePath.trim().length() > 0) {
+      try {
+        mStore = AnnotationStore.acquire(new File(storePath.trim()), backend + ':'
+                + (useHmm ? fileKey(modelPath) + ':' + maxNBest + ':' + confidence : "") + ':'
+                + (useDictionary || threshold > 0 ? fileKey(lexiconPath) : "") + ':' + threshold);
+      } catch (IOException e) {
+        throw new ResourceInitializationException(e);
+      }
+    }
+    GeneTagger hmm = null;
+    if (useHmm) {
+      Chunker chunker = getChunker(aContext, modelPath);
+      if (maxNBest <= 0) {
+        hmm = new HmmGeneTagger(chunker);
+      } else if (chunker instanceof ConfidenceChunker) {
+        hmm = new ConfidenceGeneTagger((ConfidenceChunker) chunker, maxNBest, confidence);
+      } else {
+        throw new ResourceInitializationException(
+                ResourceInitializationException.RESOURCE_DATA_NOT_VALID, new Object[] {
+                    Integer.valueOf(maxNBest), PARAM_MAXNBEST });
+      }
+    }
+    DictionaryGeneTagger dictionary = null;
+    if (useDictionary) {
+      if (lexiconPath == null) {
+        throw new ResourceInitializationException(
+                ResourceInitializationException.CONFIG_SETTING_ABSENT,
+                new Object[] { PARAM_LEXICONFILE });
+      }
+      dictionary = loadLexicon(lexiconPath);
+    }
+    if (hmm != null && dictionary != null) {
+      mTagger = new UnionGeneTagger(hmm, dictionary);
+    } else {
+      mTagger = (hmm != null) ? hmm : dictionary;
+    }
+    mCascade = null;
+    if (threshold > 0) {
+      // the cascade scans with its own automaton: a tagger instance keeps scratch state
+      DictionaryGeneTagger lexicon = (lexiconPath == null) ? null : loadLexicon(lexiconPath);
+      mCascade = new CascadeGeneTagger(mTagger, lexicon, threshold, audit != null
+              && audit.booleanValue());
+      mTagger = mCascade;
+    }
+  }
+
+  private static DictionaryGeneTagger loadLexicon(String lexiconPath)
+          throws ResourceInitializationException {
+    try {
+      return DictionaryGeneTagger.load(new File(lexiconPath.trim()));
+    } catch (IOException e) {
+      throw new ResourceInitializationException(e);
+    }
+  }
+
+  /**
+   * Get the chunker from the shared resource, or load it from the model file.
+   */
+  private static Chunker getChunker(UimaContext aContext, String modelPath)
+          throws ResourceInitializationException {
+    ChunkerResource resource;
+    try {
+      resource = (ChunkerResource) aContext.getResourceObject(RESOURCE_MODEL);
+    } catch (ResourceAccessException e) {
+      throw new ResourceInitializationException(e);
+    }
+    if (resource != null) {
+      return resource.getChunker();
+    }
+    if (modelPath == null) {
+      throw new ResourceInitializationException(
+              ResourceInitializationException.CONFIG_SETTING_ABSENT, new Object[] { PARAM_MODELFILE });
+    }
+    return ChunkerResource_impl.readChunker(new File(modelPath.trim()));
+  }
+
+  /**
+   * Identify a model file for the annotation store, so spans stored by another model are not
+   * replayed.
+   */
+  private static String fileKey(String path) {
+    if (path == null) {
+      return "";
+    }
+    File file = new File(path.trim());
+    return file.getName() + ':' + file.length() + ':' + file.lastModified();
+  }
   
   /**
    * Counting the the number of spaces before the character indexed by sentinel
@@ -49,7 +329,10 @@ public class GeneNameAnnotator extends JCasAnnotator_ImplBase {
    * @param text        the string of text the method works on
    * @return               the number of spaces before the character indexed by sentinel
    *                             in the text                            
+   * @deprecated  copies the text on every call; {@link SpaceOffsetMap} counts the spaces of a
+   *                  sentence once. Kept as the baseline of the offset benchmark.
    */
+  @Deprecated
   public int Indentation(int sentinel, String text){
     text = text.substring(0,  sentinel + 1);
     int index = -1;
@@ -69,65 +352,143 @@ public class GeneNameAnnotator extends JCasAnnotator_ImplBase {
    * @see JCasAnnotator_ImplBase#process(JCas)
    */
   public void process(JCas aJCas) {
+    long casStart = System.nanoTime();
     //Get document text and other initializations
     String docText = aJCas.getDocumentText();
-    String[] sentences = docText.split("\n");
-    String ID, Name, sent;
-    int begin, end, delimiterIndex;
+    String ID, sent;
+    int delimiterIndex;
     ID = null;
-    Name = null;
-    begin = end = delimiterIndex = -1;
-    //Call the methods from Lingpipe NER to detects the gene names in the documents.
-    //String lingpipeNER = "src/main/java/ne-en-bio-genetag.HmmChunker";
-    String lingpipeNER = "ne-en-bio-genetag.HmmChunker";
-    File modelFile = new File(lingpipeNER);
-    Chunker chunker;
-    Chunking chunking;
-    Set<Chunk> cs;
-    Iterator<Chunk> iter;
-    Chunk c;
-    int start_indent, end_indent;
-    start_indent = end_indent = -1;
-    int accumulate_offset = 0;
-    try{
-      chunker = (Chunker) AbstractExternalizable.readObject(modelFile);
-      for(String sentence : sentences){
-        sentence = sentence.trim();
-        delimiterIndex = sentence.indexOf(' ');
-        ID = sentence.substring(0, delimiterIndex);
-        //extract the sentence from each line of the documents
-        sent = sentence.substring(delimiterIndex + 1);
-             
-        chunking = chunker.chunk(sent);
-        cs = chunking.chunkSet();
-        iter = cs.iterator();
-        /*
-         * Each time lingpipeNER detects a gene name, create a new annotation,
-         * set relevant features and add the annotation to the index.
-         */
-        
-        while(iter.hasNext()){ 
-          c = iter.next();
-          GeneName annotation = new GeneName(aJCas);
-          Name = sent.substring(c.start(), c.end());
-
-          start_indent = Indentation(c.start(), sent);
-          end_indent = Indentation(c.end() - 1, sent);
-          begin = c.start() - start_indent + accumulate_offset;
-          end = c.end() - end_indent - 1 + accumulate_offset;
-          annotation.setID(ID);
-          annotation.setName(Name);
-          annotation.setBegin(begin);
-          annotation.setEnd(end);
-          annotation.setAccumulate(accumulate_offset);
-          annotation.addToIndexes();
+    delimiterIndex = -1;
+    int[] spans;
+    int sentBegin, sentEnd;
+    int lineStart, lineEnd;
+    int sentences = 0, chunks = 0, decoded = 0;
+    long modelNanos = 0;
+    long start, tagStart;
+    //walk the lines in place instead of copying the whole document with split()
+    for(lineStart = 0; lineStart < docText.length(); lineStart = lineEnd + 1){
+      lineEnd = docText.indexOf('\n', lineStart);
+      if(lineEnd == -1){
+        lineEnd = docText.length();
+      }
+      //trim the line without copying it, keeping document offsets
+      sentBegin = lineStart;
+      sentEnd = lineEnd;
+      while(sentBegin < sentEnd && docText.charAt(sentBegin) <= ' '){
+        sentBegin++;
+      }
+      while(sentEnd > sentBegin && docText.charAt(sentEnd - 1) <= ' '){
+        sentEnd--;
+      }
+      if(sentBegin == sentEnd){
+        continue;
+      }
+      start = System.nanoTime();
+      //the ID ends at the first space of the line; a line without one has no sentence
+      delimiterIndex = sentBegin;
+      while(delimiterIndex < sentEnd && docText.charAt(delimiterIndex) != ' '){
+        delimiterIndex++;
+      }
+      if(delimiterIndex == sentEnd){
+        getContext().getLogger().log(Level.WARNING, "Skipping line without a sentence: "
+                + docText.substring(sentBegin, sentEnd));
+        continue;
+      }
+      ID = docText.substring(sentBegin, delimiterIndex);
+      //extract the sentence from each line of the documents
+      sentBegin = delimiterIndex + 1;
+      sent = docText.substring(sentBegin, sentEnd);
+           
+      long hash = 0;
+      spans = null;
+      if(mStore != null){
+        hash = AnnotationStore.hash(sent);
+        spans = mStore.get(ID, hash);
+      }
+      if(spans != null){
+        mReplayed++;
+      }else{
+        spans = (mCache == null) ? null : mCache.get(sent);
+        if(spans == null){
+          tagStart = System.nanoTime();
+          spans = mTagger.tag(sent);
+          modelNanos += System.nanoTime() - tagStart;
+          decoded++;
+          mDecoded++;
+          if(mCache != null){
+            mCache.put(sent, spans);
+          }
+        }
+        if(mStore != null){
+          mStore.put(ID, hash, spans);
         }
-        accumulate_offset += sent.length();
       }
-   }catch(ClassNotFoundException e){
-     System.err.println("FileNotFoundException: " + e.getLocalizedMessage());
-   }catch(IOException e){
-     System.err.println("FileNotFoundException: " + e.getLocalizedMessage());
-   }
+      //the sentence carries the ID once for all its gene names
+      Sentence sentence = new Sentence(aJCas, sentBegin, sentEnd);
+      sentence.setID(ID);
+      sentence.addToIndexes();
+      /*
+       * Each time lingpipeNER detects a gene name, create a new annotation
+       * over its characters in the document, link it to its sentence and
+       * add the annotation to the index.
+       */
+      
+      for(int i = 0; i < spans.length; i += GeneTagger.STRIDE){ 
+        GeneName annotation = new GeneName(aJCas, sentBegin + spans[i], sentBegin + spans[i + 1]);
+        annotation.setSentence(sentence);
+        annotation.setConfidence(((double) spans[i + 2]) / GeneTagger.CONFIDENCE_SCALE);
+        annotation.addToIndexes();
+      }
+      sentences++;
+      chunks += spans.length / GeneTagger.STRIDE;
+      mMetrics.recordLatency(System.nanoTime() - start);
+    }
+    mSentences.addAndGet(sentences);
+    mChunks.addAndGet(chunks);
+    mDecodedCount.addAndGet(decoded);
+    mModelNanos.addAndGet(modelNanos);
+    CasTrace.span(STAGE, aJCas.getCas(), casStart, System.nanoTime());
+  }
+
+  /**
+   * Log the hit and miss counts of the cache and save the annotation store.
+   * 
+   * @throws AnalysisEngineProcessException  if the annotation store cannot be saved
+   * @see org.apache.uima.analysis_component.AnalysisComponent_ImplBase#collectionProcessComplete()
+   */
+  public void collectionProcessComplete() throws AnalysisEngineProcessException {
+    super.collectionProcessComplete();
+    if(mCache != null){
+      getContext().getLogger().log(Level.INFO, "Chunk cache: " + mCache.getHits() + " hits, "
+              + mCache.getMisses() + " misses, hit rate " + mCache.getHitRate() + ", "
+              + mCache.size() + " sentences cached");
+    }
+    if(mCascade != null){
+      getContext().getLogger().log(Level.INFO, "Cascade: " + mCascade.getSkipped()
+              + " sentences skipped, " + mCascade.getPassed() + " tagged"
+              + (mCascade.isAudit() ? ", " + mCascade.getLost() + " mentions lost" : ""));
+    }
+    if(mStore != null){
+      getContext().getLogger().log(Level.INFO, "Annotation store: " + mReplayed
+              + " sentences replayed, " + mDecoded + " decoded, " + mStore.size() + " stored");
+      try {
+        mStore.save();
+      } catch (IOException e) {
+        throw new AnalysisEngineProcessException(e);
+      }
+    }
+  }
+
+  /**
+   * Give up the reference to the annotation store.
+   * 
+   * @see org.apache.uima.analysis_component.AnalysisComponent_ImplBase#destroy()
+   */
+  public void destroy() {
+    if(mStore != null){
+      mStore.release();
+      mStore = null;
+    }
+    super.destroy();
   }
 }
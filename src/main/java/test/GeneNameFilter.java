@@ -19,23 +19,167 @@
 
 package test;
 
-import java.util.ArrayList;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
 import model.GeneName;
 
 /**
  * GeneNameFilter that descards some obvious wrong annotations detected by previous annnotator.
+ * <br>
+ * The rules are read once, in initialize, from the descriptor:
+ * <ol>
+ * <li> "MinLength" : names shorter than this are rejected.</li>
+ * <li> "RejectSingleLowercase" : reject names made of one lower case letter.</li>
+ * <li> "RejectDigitsOnly" : reject names made only of digits.</li>
+ * <li> "StopListFiles" : files with one rejected name per line.</li>
+ * <li> "Patterns" : regular expressions; a name in which one of them is found is rejected.</li>
+ * </ol>
+ * The rules are tried from the cheapest to the most expensive. The length and character class
+ * rules are scans of the covered text of the annotation in the document text that allocate
+ * nothing, the stop lists are merged into one hash set, and the patterns into one alternation
+ * matched with a single reused matcher on the region of the annotation, so adding stop words or
+ * patterns does not add a pass over the annotations.
+ * <br>
+ * The latency of every CAS is recorded in the {@link StageMetrics} of the stage "GeneNameFilter",
+ * with the counters <code>annotations</code> and <code>dropped</code>, and stamped in the
+ * {@link CasTrace} while one is open.
  * 
  * @author jacky
  * @version 1.0 14 Oct 2012
  */
 public class GeneNameFilter extends JCasAnnotator_ImplBase {
   /**
-   * The GeneNameAnnotator use this method descard the annotations with one of two features:
+   * Name of optional configuration parameter that contains the minimum length of a name.
+   */
+  public static final String PARAM_MINLENGTH = "MinLength";
+
+  /**
+   * Name of optional configuration parameter that enables the single lower case letter rule.
+   */
+  public static final String PARAM_SINGLELOWERCASE = "RejectSingleLowercase";
+
+  /**
+   * Name of optional configuration parameter that enables the digits only rule.
+   */
+  public static final String PARAM_DIGITSONLY = "RejectDigitsOnly";
+
+  /**
+   * Name of optional multi-valued configuration parameter that contains the stop list files.
+   */
+  public static final String PARAM_STOPLISTFILES = "StopListFiles";
+
+  /**
+   * Name of optional multi-valued configuration parameter that contains the reject patterns.
+   */
+  public static final String PARAM_PATTERNS = "Patterns";
+
+  /**
+   * Name of the stage in the {@link StageMetrics}.
+   */
+  public static final String STAGE = "GeneNameFilter";
+
+  private int mMinLength;
+
+  private boolean mRejectSingleLowercase;
+
+  private boolean mRejectDigitsOnly;
+
+  private Set<String> mStopList;
+
+  private Matcher mMatcher;
+
+  private GeneName[] mRejected = new GeneName[16];
+
+  private StageMetrics mMetrics;
+
+  private AtomicLong mAnnotations;
+
+  private AtomicLong mDropped;
+
+  /**
+   * Read the rules from the descriptor.
+   * 
+   * @param aContext  the UIMA context of the annotator
+   * @throws ResourceInitializationException  if a stop list cannot be read or a pattern is invalid
+   * @see org.apache.uima.analysis_component.AnalysisComponent_ImplBase#initialize(UimaContext)
+   */
+  public void initialize(UimaContext aContext) throws ResourceInitializationException {
+    super.initialize(aContext);
+    mMetrics = StageMetrics.get(STAGE);
+    mAnnotations = mMetrics.counter("annotations");
+    mDropped = mMetrics.counter("dropped");
+    Integer minLength = (Integer) aContext.getConfigParameterValue(PARAM_MINLENGTH);
+    mMinLength = (minLength == null) ? 0 : minLength.intValue();
+    Boolean singleLowercase = (Boolean) aContext.getConfigParameterValue(PARAM_SINGLELOWERCASE);
+    mRejectSingleLowercase = (singleLowercase == null) || singleLowercase.booleanValue();
+    Boolean digitsOnly = (Boolean) aContext.getConfigParameterValue(PARAM_DIGITSONLY);
+    mRejectDigitsOnly = (digitsOnly == null) || digitsOnly.booleanValue();
+
+    mStopList = null;
+    String[] stopListFiles = (String[]) aContext.getConfigParameterValue(PARAM_STOPLISTFILES);
+    if (stopListFiles != null && stopListFiles.length > 0) {
+      mStopList = new HashSet<String>();
+      for (String path : stopListFiles) {
+        readStopList(new File(path.trim()), mStopList);
+      }
+    }
+
+    mMatcher = null;
+    String[] patterns = (String[]) aContext.getConfigParameterValue(PARAM_PATTERNS);
+    if (patterns != null && patterns.length > 0) {
+      StringBuilder alternation = new StringBuilder();
+      for (String pattern : patterns) {
+        if (alternation.length() > 0) {
+          alternation.append('|');
+        }
+        alternation.append("(?:").append(pattern).append(')');
+      }
+      try {
+        mMatcher = Pattern.compile(alternation.toString()).matcher("");
+      } catch (PatternSyntaxException e) {
+        throw new ResourceInitializationException(e);
+      }
+    }
+  }
+
+  private static void readStopList(File file, Set<String> stopList)
+          throws ResourceInitializationException {
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+              "UTF-8"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (line.length() > 0) {
+            stopList.add(line);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      throw new ResourceInitializationException(e);
+    }
+  }
+
+  /**
+   * The GeneNameFilter use this method to descard the annotations rejected by one of its rules.
+   * The default rules descard the annotations with one of two features:
    * 1. The name of the annotation only contains one lower letter.
    * 2. The name of the annotation only contains numbers.
    * 
@@ -43,23 +187,71 @@ public class GeneNameFilter extends JCasAnnotator_ImplBase {
    * @see JCasAnnotator_ImplBase#process(JCas)
    */
   public void process(JCas aJCas) {
+    long start = System.nanoTime();
+    String docText = aJCas.getDocumentText();
     Iterator it = aJCas.getAnnotationIndex(GeneName.type).iterator();
-    //Use regular matching to filter the annotations detected by the previous annotator
-    Pattern filter = Pattern.compile("^[a-z]$|^[0-9]+$");
-    ArrayList<GeneName> table = new ArrayList<GeneName>();
+    int rejected = 0;
+    int annotations = 0;
     GeneName annot;
-    Matcher matcher;
     while(it.hasNext()){
       annot = (GeneName)it.next();
-      matcher = filter.matcher(annot.getName());
-      //Add wrong annotations first into an ArrayList
-      if(matcher.find()){
-        table.add(annot);
+      annotations++;
+      //The index cannot be changed while it is iterated: remember wrong annotations first
+      if(reject(docText, annot.getBegin(), annot.getEnd())){
+        if(rejected == mRejected.length){
+          GeneName[] grown = new GeneName[2 * rejected];
+          System.arraycopy(mRejected, 0, grown, 0, rejected);
+          mRejected = grown;
+        }
+        mRejected[rejected++] = annot;
       }
     }
     //Delete wrong annotations from the index
-    for(GeneName gn: table){
-      aJCas.removeFsFromIndexes(gn);
+    for(int i = 0; i < rejected; i++){
+      aJCas.removeFsFromIndexes(mRejected[i]);
+      mRejected[i] = null;
+    }
+    mAnnotations.addAndGet(annotations);
+    mDropped.addAndGet(rejected);
+    long end = System.nanoTime();
+    mMetrics.recordLatency(end - start);
+    CasTrace.span(STAGE, aJCas.getCas(), start, end);
+  }
+
+  /**
+   * Apply the rules to a name held in a region of a larger text, such as the covered text of an
+   * annotation in the document text. The name is only copied if a stop list is set.
+   *
+   * @param text   the text holding the name
+   * @param begin  index of the first character of the name
+   * @param end    index after the last character of the name
+   * @return         true if one of the rules rejects the name
+   */
+  boolean reject(String text, int begin, int end) {
+    int length = end - begin;
+    if (length < mMinLength) {
+      return true;
+    }
+    if (mRejectSingleLowercase && length == 1 && text.charAt(begin) >= 'a'
+            && text.charAt(begin) <= 'z') {
+      return true;
+    }
+    if (mRejectDigitsOnly && length > 0 && isDigits(text, begin, end)) {
+      return true;
+    }
+    if (mStopList != null && mStopList.contains(text.substring(begin, end))) {
+      return true;
+    }
+    return mMatcher != null && mMatcher.reset(text).region(begin, end).find();
+  }
+
+  private static boolean isDigits(String text, int begin, int end) {
+    for (int i = begin; i < end; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
     }
+    return true;
   }
 }
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+/**
+ * A gene mention tagger behind GeneNameAnnotator. <br>
+ * A tagger returns the mentions of a sentence as {start0, end0, confidence0, start1, ...}:
+ * {@link #STRIDE} ints per mention, character offsets in the sentence with exclusive ends, in
+ * increasing order and not overlapping, and the confidence of the mention in units of
+ * 1/{@link #CONFIDENCE_SCALE}. Taggers without a measure of confidence give 1. An instance is
+ * used by one annotator replica at a time, so it may keep scratch state between calls.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public interface GeneTagger {
+  /**
+   * Number of ints per mention.
+   */
+  int STRIDE = 3;
+
+  /**
+   * Confidence 1 in the units of the returned array.
+   */
+  int CONFIDENCE_SCALE = 1000000;
+
+  /**
+   * Find the gene mentions of a sentence.
+   *
+   * @param sentence  the sentence, without its ID
+   * @return            the mention spans; an empty array if there are none
+   */
+  int[] tag(String sentence);
+}
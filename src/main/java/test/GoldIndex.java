@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gold standard gene mentions indexed by sentence ID. <br>
+ * Each line of the standard file, <code>ID|begin end|name</code>, is stored as a pair of
+ * primitive offsets in the array of its sentence. The mention text is not kept: within one
+ * sentence the offsets determine it. A mention listed twice is kept once, so it counts once
+ * towards recall. For standard files too large to hold on the heap, see {@link MappedGoldIndex}.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class GoldIndex implements GoldStandard {
+  private static final int[] NONE = new int[0];
+
+  /**
+   * Sentence ID to {begin0, end0, begin1, end1, ...}.
+   */
+  private final Map<String, int[]> mSpans;
+
+  private final int mSize;
+
+  /**
+   * Parse the standard file.
+   *
+   * @param file      the standard file
+   * @param encoding  character encoding of the file, or null for the default system encoding
+   * @throws IOException  if the file cannot be read or a line is malformed
+   */
+  public GoldIndex(File file, String encoding) throws IOException {
+    Map<String, int[]> spans = new HashMap<String, int[]>();
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    int size = 0;
+    Charset charset = (encoding == null) ? Charset.defaultCharset() : Charset.forName(encoding);
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+            charset));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.length() == 0) {
+          continue;
+        }
+        int idEnd = line.indexOf('|');
+        int space = line.indexOf(' ', idEnd + 1);
+        int offsetsEnd = line.indexOf('|', idEnd + 1);
+        if (idEnd <= 0 || space == -1 || offsetsEnd == -1 || space > offsetsEnd) {
+          throw new IOException("Malformed line in " + file + ": " + line);
+        }
+        String id = line.substring(0, idEnd);
+        int begin, end;
+        try {
+          begin = Integer.parseInt(line.substring(idEnd + 1, space));
+          end = Integer.parseInt(line.substring(space + 1, offsetsEnd));
+        } catch (NumberFormatException e) {
+          throw new IOException("Malformed line in " + file + ": " + line);
+        }
+        Integer count = counts.get(id);
+        int n = (count == null) ? 0 : count.intValue();
+        int[] pairs = spans.get(id);
+        if (contains(pairs, n, begin, end)) {
+          continue;
+        }
+        if (pairs == null) {
+          pairs = new int[2];
+        } else if (pairs.length < 2 * (n + 1)) {
+          int[] grown = new int[pairs.length * 2];
+          System.arraycopy(pairs, 0, grown, 0, pairs.length);
+          pairs = grown;
+        }
+        pairs[2 * n] = begin;
+        pairs[2 * n + 1] = end;
+        spans.put(id, pairs);
+        counts.put(id, Integer.valueOf(n + 1));
+        size++;
+      }
+    } finally {
+      reader.close();
+    }
+    // trim the arrays to their final size
+    for (Map.Entry<String, int[]> entry : spans.entrySet()) {
+      int n = counts.get(entry.getKey()).intValue();
+      if (entry.getValue().length != 2 * n) {
+        int[] trimmed = new int[2 * n];
+        System.arraycopy(entry.getValue(), 0, trimmed, 0, trimmed.length);
+        entry.setValue(trimmed);
+      }
+    }
+    mSpans = spans;
+    mSize = size;
+  }
+
+  /**
+   * @see test.GoldStandard#size()
+   */
+  public int size() {
+    return mSize;
+  }
+
+  /**
+   * @see test.GoldStandard#count(String)
+   */
+  public int count(String id) {
+    return spans(id).length / 2;
+  }
+
+  /**
+   * @see test.GoldStandard#contains(String, int, int)
+   */
+  public boolean contains(String id, int begin, int end) {
+    int[] pairs = spans(id);
+    return contains(pairs, pairs.length / 2, begin, end);
+  }
+
+  /**
+   * @return    true if one of the first n pairs is begin, end
+   */
+  private static boolean contains(int[] pairs, int n, int begin, int end) {
+    for (int i = 0; i < 2 * n; i += 2) {
+      if (pairs[i] == begin && pairs[i + 1] == end) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int[] spans(String id) {
+    int[] pairs = mSpans.get(id);
+    return (pairs == null) ? NONE : pairs;
+  }
+}
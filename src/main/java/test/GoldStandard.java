@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+/**
+ * The gold standard gene mentions an evaluation is scored against. <br>
+ * Mentions are identified as in the standard file, <code>ID|begin end|name</code>: by sentence ID
+ * and the space-excluding offsets of their first and last characters. Implementations are
+ * read-only once built, so one instance can be used by several threads.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public interface GoldStandard {
+  /**
+   * @return    the number of distinct mentions in the standard file
+   */
+  int size();
+
+  /**
+   * @param id  a sentence ID
+   * @return      the number of gold mentions in the sentence
+   */
+  int count(String id);
+
+  /**
+   * @param id     a sentence ID
+   * @param begin  space-excluding offset of the first character of the mention
+   * @param end    space-excluding offset of the last character of the mention
+   * @return         true if the mention is in the standard file
+   */
+  boolean contains(String id, int begin, int end);
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import com.aliasi.chunk.Chunk;
+import com.aliasi.chunk.Chunker;
+
+/**
+ * Tagger decoding each sentence with a LingPipe chunker, such as the GENETAG HmmChunker.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class HmmGeneTagger implements GeneTagger {
+  private static final int[] NO_SPANS = new int[0];
+
+  private final Chunker mChunker;
+
+  /**
+   * @param chunker  the chunker; it is shared, and must allow concurrent use
+   */
+  public HmmGeneTagger(Chunker chunker) {
+    mChunker = chunker;
+  }
+
+  /**
+   * Copy the chunk offsets of the first-best chunking, in chunk set order, with confidence 1.
+   *
+   * @see test.GeneTagger#tag(String)
+   */
+  public int[] tag(String sentence) {
+    Set<Chunk> cs = mChunker.chunk(sentence).chunkSet();
+    if (cs.isEmpty()) {
+      return NO_SPANS;
+    }
+    int[] spans = new int[STRIDE * cs.size()];
+    int i = 0;
+    for (Iterator<Chunk> iter = cs.iterator(); iter.hasNext();) {
+      Chunk c = iter.next();
+      spans[i++] = c.start();
+      spans[i++] = c.end();
+      spans[i++] = CONFIDENCE_SCALE;
+    }
+    return spans;
+  }
+}
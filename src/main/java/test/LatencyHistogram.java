@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds, with buckets in the manner of HdrHistogram.
+ * <br>
+ * Values below {@link #SUB_BUCKETS} have a bucket each; above, every power of two is divided
+ * into {@link #SUB_BUCKETS}/2 linear buckets, so a value is known to within 1/64 of itself
+ * whatever its magnitude, in under 4000 buckets. Recording is one increment of an atomic array
+ * element, so any number of threads can record into one histogram. Percentiles are computed on
+ * a snapshot of the counts, and on the difference of two snapshots for an interval.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class LatencyHistogram {
+  /**
+   * Number of buckets of the first power of two range; sets the precision.
+   */
+  public static final int SUB_BUCKETS = 128;
+
+  private static final int SUB_BITS = 7;
+
+  private static final int HALF = SUB_BUCKETS / 2;
+
+  private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BITS + 1) * HALF;
+
+  private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+
+  /**
+   * Record a latency.
+   *
+   * @param nanos  the latency; negative values count as 0
+   */
+  public void record(long nanos) {
+    mCounts.incrementAndGet(bucket(Math.max(nanos, 0)));
+  }
+
+  /**
+   * @return    a copy of the bucket counts
+   */
+  public long[] snapshot() {
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = mCounts.get(i);
+    }
+    return counts;
+  }
+
+  /**
+   * Forget the latencies recorded so far. Latencies recorded meanwhile may be kept or lost.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      mCounts.set(i, 0);
+    }
+  }
+
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+    return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+  }
+
+  /**
+   * @return    the middle of the values falling in the bucket
+   */
+  static long value(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - SUB_BUCKETS) / HALF + 1;
+    long low = ((long) ((bucket - SUB_BUCKETS) % HALF + HALF)) << shift;
+    return low + (1L << (shift - 1));
+  }
+
+  /**
+   * @param counts  bucket counts
+   * @return          the number of values counted
+   */
+  public static long count(long[] counts) {
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      total += counts[i];
+    }
+    return total;
+  }
+
+  /**
+   * @param counts      bucket counts
+   * @param percentile  from 0 to 100
+   * @return              the value at the percentile, 0 if nothing was counted
+   */
+  public static long percentile(long[] counts, double percentile) {
+    long total = count(counts);
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return value(i);
+      }
+    }
+    return value(counts.length - 1);
+  }
+
+  /**
+   * @param counts  bucket counts
+   * @return          the largest value counted, to the precision of its bucket
+   */
+  public static long max(long[] counts) {
+    for (int i = counts.length - 1; i >= 0; i--) {
+      if (counts[i] > 0) {
+        return value(i);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * @param counts  bucket counts
+   * @return          the mean of the values counted
+   */
+  public static double mean(long[] counts) {
+    long total = 0;
+    double sum = 0;
+    for (int i = 0; i < counts.length; i++) {
+      total += counts[i];
+      sum += (double) counts[i] * value(i);
+    }
+    return (total == 0) ? 0.0 : sum / total;
+  }
+
+  /**
+   * @param now     later bucket counts
+   * @param before  earlier bucket counts of the same histogram
+   * @return          the counts recorded in between
+   */
+  public static long[] difference(long[] now, long[] before) {
+    long[] counts = new long[now.length];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = now[i] - before[i];
+    }
+    return counts;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads a file of <code>&lt;ID&gt; &lt;sentence&gt;</code> lines in batches through a buffered
+ * NIO channel. <br>
+ * Only the decoding buffer and the batch being filled are held in memory, so the heap needed to
+ * read a file does not depend on its size. Line terminators are kept, so the character offset of
+ * every batch in the file is known.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class LineBatchReader {
+  private final Reader mReader;
+
+  private final char[] mBuffer;
+
+  private int mPos;
+
+  private int mLimit;
+
+  private long mOffset;
+
+  /**
+   * Open the file for reading.
+   *
+   * @param file        the file to read
+   * @param encoding    character encoding of the file, or null for the default system encoding
+   * @param bufferSize  size of the byte and character buffers
+   * @throws IOException  if the file cannot be opened
+   */
+  public LineBatchReader(File file, String encoding, int bufferSize) throws IOException {
+    Charset charset = (encoding == null) ? Charset.defaultCharset() : Charset.forName(encoding);
+    FileChannel channel = new FileInputStream(file).getChannel();
+    mReader = Channels.newReader(channel, charset.newDecoder(), bufferSize);
+    mBuffer = new char[bufferSize];
+    mPos = mLimit = 0;
+    mOffset = 0;
+  }
+
+  /**
+   * Append up to <code>maxLines</code> lines, including their terminators, to the batch.
+   *
+   * @param maxLines  maximum number of lines to read
+   * @param batch     the buffer the lines are appended to
+   * @return            the number of lines read, 0 at the end of the file
+   * @throws IOException  if the file cannot be read
+   */
+  public int readLines(int maxLines, StringBuilder batch) throws IOException {
+    int lines = 0;
+    boolean inLine = false;
+    while (lines < maxLines) {
+      if (mPos == mLimit && !fill()) {
+        // last line of the file has no terminator
+        if (inLine) {
+          lines++;
+        }
+        break;
+      }
+      int start = mPos;
+      while (mPos < mLimit && mBuffer[mPos] != '\n') {
+        mPos++;
+      }
+      boolean endOfLine = mPos < mLimit;
+      if (endOfLine) {
+        mPos++;
+      }
+      batch.append(mBuffer, start, mPos - start);
+      mOffset += mPos - start;
+      if (endOfLine) {
+        lines++;
+      }
+      inLine = !endOfLine;
+    }
+    return lines;
+  }
+
+  /**
+   * Check if there are characters left in the file.
+   *
+   * @return    true if the file is not exhausted
+   * @throws IOException  if the file cannot be read
+   */
+  public boolean hasMore() throws IOException {
+    return mPos < mLimit || fill();
+  }
+
+  /**
+   * @return    the number of characters consumed so far, i.e. the offset of the next batch
+   */
+  public long getOffset() {
+    return mOffset;
+  }
+
+  /**
+   * Release the channel.
+   *
+   * @throws IOException  if the channel cannot be closed
+   */
+  public void close() throws IOException {
+    mReader.close();
+  }
+
+  private boolean fill() throws IOException {
+    int read = mReader.read(mBuffer, 0, mBuffer.length);
+    if (read <= 0) {
+      return false;
+    }
+    mPos = 0;
+    mLimit = read;
+    return true;
+  }
+}
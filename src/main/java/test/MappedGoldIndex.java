@@ -0,0 +1,421 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Gold standard gene mentions read from a memory-mapped standard file. <br>
+ * The file is mapped read-only and scanned once. For each line only the 64-bit FNV-1a hash of
+ * its sentence ID, its two offsets and the position of the line in the file are kept, in four
+ * primitive arrays sorted by hash: 20 bytes of heap per mention, whatever the length of the IDs
+ * and names. A lookup finds the lines of an ID by bisection, and checks the ID bytes in the
+ * mapping, so a hash collision never yields a wrong answer. The mapped pages are held by the
+ * operating system's page cache, and are shared by every run evaluating against the same file.
+ * As in {@link GoldIndex}, a mention listed twice is kept once. <br>
+ * IDs are compared as UTF-8. A mapping is limited to 2 GB, and is released when the index is
+ * garbage collected.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class MappedGoldIndex implements GoldStandard {
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private static final int INSERTION_SORT_SIZE = 16;
+
+  private final File mFile;
+
+  private final MappedByteBuffer mBuffer;
+
+  /**
+   * Bits of the hash that are kept; fewer than all of them force collisions in tests.
+   */
+  private final long mHashMask;
+
+  private long[] mHashes = new long[1024];
+
+  private int[] mBegins = new int[1024];
+
+  private int[] mEnds = new int[1024];
+
+  /**
+   * Position in the file of the first byte of each line, that is of its ID.
+   */
+  private int[] mLines = new int[1024];
+
+  private int mSize;
+
+  /**
+   * Map and index the standard file.
+   *
+   * @param file  the standard file
+   * @throws IOException  if the file cannot be mapped or a line is malformed
+   */
+  public MappedGoldIndex(File file) throws IOException {
+    this(file, -1L);
+  }
+
+  /**
+   * Map and index the standard file, keeping only some bits of the hashes.
+   *
+   * @param file      the standard file
+   * @param hashMask  the bits of the hashes kept
+   * @throws IOException  if the file cannot be mapped or a line is malformed
+   */
+  MappedGoldIndex(File file, long hashMask) throws IOException {
+    mFile = file;
+    mHashMask = hashMask;
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileChannel channel = in.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Standard file larger than 2 GB: " + file);
+      }
+      mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      // the mapping stays valid after the channel is closed
+      in.close();
+    }
+    scan();
+    sort(0, mSize - 1);
+    removeDuplicates();
+  }
+
+  private void scan() throws IOException {
+    int limit = mBuffer.limit();
+    int pos = 0;
+    while (pos < limit) {
+      int lineStart = pos;
+      long hash = FNV_OFFSET;
+      byte b = 0;
+      while (pos < limit && (b = mBuffer.get(pos)) != '|' && b != '\n') {
+        hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        pos++;
+      }
+      if (pos == limit || b == '\n') {
+        // no separator: only a blank line is allowed
+        if (isBlank(lineStart, pos)) {
+          pos++;
+          continue;
+        }
+        throw malformed(lineStart);
+      }
+      if (pos == lineStart) {
+        throw malformed(lineStart);
+      }
+      pos++;
+      int begin = 0;
+      int digits = 0;
+      while (pos < limit && (b = mBuffer.get(pos)) >= '0' && b <= '9') {
+        begin = 10 * begin + (b - '0');
+        digits++;
+        pos++;
+      }
+      if (digits == 0 || pos == limit || b != ' ') {
+        throw malformed(lineStart);
+      }
+      pos++;
+      int end = 0;
+      digits = 0;
+      while (pos < limit && (b = mBuffer.get(pos)) >= '0' && b <= '9') {
+        end = 10 * end + (b - '0');
+        digits++;
+        pos++;
+      }
+      if (digits == 0 || pos == limit || b != '|') {
+        throw malformed(lineStart);
+      }
+      // skip the name
+      while (pos < limit && mBuffer.get(pos) != '\n') {
+        pos++;
+      }
+      pos++;
+      add(hash & mHashMask, begin, end, lineStart);
+    }
+  }
+
+  private boolean isBlank(int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (mBuffer.get(i) != '\r') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private IOException malformed(int lineStart) {
+    int lineEnd = lineStart;
+    while (lineEnd < mBuffer.limit() && mBuffer.get(lineEnd) != '\n') {
+      lineEnd++;
+    }
+    byte[] line = new byte[lineEnd - lineStart];
+    for (int i = 0; i < line.length; i++) {
+      line[i] = mBuffer.get(lineStart + i);
+    }
+    try {
+      return new IOException("Malformed line in " + mFile + ": " + new String(line, "UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void add(long hash, int begin, int end, int line) {
+    if (mSize == mHashes.length) {
+      int capacity = 2 * mSize;
+      long[] hashes = new long[capacity];
+      int[] begins = new int[capacity];
+      int[] ends = new int[capacity];
+      int[] lines = new int[capacity];
+      System.arraycopy(mHashes, 0, hashes, 0, mSize);
+      System.arraycopy(mBegins, 0, begins, 0, mSize);
+      System.arraycopy(mEnds, 0, ends, 0, mSize);
+      System.arraycopy(mLines, 0, lines, 0, mSize);
+      mHashes = hashes;
+      mBegins = begins;
+      mEnds = ends;
+      mLines = lines;
+    }
+    mHashes[mSize] = hash;
+    mBegins[mSize] = begin;
+    mEnds[mSize] = end;
+    mLines[mSize] = line;
+    mSize++;
+  }
+
+  /**
+   * Quicksort of the four arrays by hash.
+   */
+  private void sort(int low, int high) {
+    while (high - low >= INSERTION_SORT_SIZE) {
+      int mid = (low + high) >>> 1;
+      // median of three as pivot
+      if (mHashes[mid] < mHashes[low]) {
+        swap(mid, low);
+      }
+      if (mHashes[high] < mHashes[low]) {
+        swap(high, low);
+      }
+      if (mHashes[high] < mHashes[mid]) {
+        swap(high, mid);
+      }
+      long pivot = mHashes[mid];
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (mHashes[i] < pivot) {
+          i++;
+        }
+        while (mHashes[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(i++, j--);
+        }
+      }
+      // recurse into the smaller part, loop on the larger one
+      if (j - low < high - i) {
+        sort(low, j);
+        low = i;
+      } else {
+        sort(i, high);
+        high = j;
+      }
+    }
+    for (int i = low + 1; i <= high; i++) {
+      for (int j = i; j > low && mHashes[j] < mHashes[j - 1]; j--) {
+        swap(j, j - 1);
+      }
+    }
+  }
+
+  /**
+   * Drop the entries repeating an earlier one of the same ID and offsets. Duplicates have the same
+   * hash, so each is only compared with the kept entries of its hash.
+   */
+  private void removeDuplicates() {
+    int kept = 0;
+    int runStart = 0;
+    for (int i = 0; i < mSize; i++) {
+      if (kept > 0 && mHashes[i] != mHashes[kept - 1]) {
+        runStart = kept;
+      }
+      boolean duplicate = false;
+      for (int k = runStart; k < kept && !duplicate; k++) {
+        duplicate = mBegins[k] == mBegins[i] && mEnds[k] == mEnds[i]
+                && sameId(mLines[k], mLines[i]);
+      }
+      if (!duplicate) {
+        mHashes[kept] = mHashes[i];
+        mBegins[kept] = mBegins[i];
+        mEnds[kept] = mEnds[i];
+        mLines[kept] = mLines[i];
+        kept++;
+      }
+    }
+    mSize = kept;
+  }
+
+  /**
+   * @return    true if the lines at positions a and b start with the same ID
+   */
+  private boolean sameId(int a, int b) {
+    for (int i = 0;; i++) {
+      byte c = mBuffer.get(a + i);
+      if (c != mBuffer.get(b + i)) {
+        return false;
+      }
+      if (c == '|') {
+        return true;
+      }
+    }
+  }
+
+  private void swap(int a, int b) {
+    long hash = mHashes[a];
+    mHashes[a] = mHashes[b];
+    mHashes[b] = hash;
+    int t = mBegins[a];
+    mBegins[a] = mBegins[b];
+    mBegins[b] = t;
+    t = mEnds[a];
+    mEnds[a] = mEnds[b];
+    mEnds[b] = t;
+    t = mLines[a];
+    mLines[a] = mLines[b];
+    mLines[b] = t;
+  }
+
+  /**
+   * @see test.GoldStandard#size()
+   */
+  public int size() {
+    return mSize;
+  }
+
+  /**
+   * @see test.GoldStandard#count(String)
+   */
+  public int count(String id) {
+    long hash = hash(id) & mHashMask;
+    int count = 0;
+    for (int i = first(hash); i < mSize && mHashes[i] == hash; i++) {
+      if (idAt(mLines[i], id)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @see test.GoldStandard#contains(String, int, int)
+   */
+  public boolean contains(String id, int begin, int end) {
+    long hash = hash(id) & mHashMask;
+    for (int i = first(hash); i < mSize && mHashes[i] == hash; i++) {
+      if (mBegins[i] == begin && mEnds[i] == end && idAt(mLines[i], id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return    the index of the first entry with the hash, or of the first greater one
+   */
+  private int first(long hash) {
+    int low = 0;
+    int high = mSize;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (mHashes[mid] < hash) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return    true if the line at position line starts with the ID and its separator
+   */
+  private boolean idAt(int line, String id) {
+    int length = id.length();
+    for (int i = 0; i < length; i++) {
+      char c = id.charAt(i);
+      if (c >= 0x80) {
+        // the separator is after the encoded bytes, not after length chars
+        return idAt(line, utf8(id));
+      }
+      if (line + i >= mBuffer.limit() || mBuffer.get(line + i) != c) {
+        return false;
+      }
+    }
+    return line + length < mBuffer.limit() && mBuffer.get(line + length) == '|';
+  }
+
+  private boolean idAt(int line, byte[] id) {
+    if (line + id.length >= mBuffer.limit() || mBuffer.get(line + id.length) != '|') {
+      return false;
+    }
+    for (int i = 0; i < id.length; i++) {
+      if (mBuffer.get(line + i) != id[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long hash(String id) {
+    long hash = FNV_OFFSET;
+    for (int i = 0; i < id.length(); i++) {
+      char c = id.charAt(i);
+      if (c >= 0x80) {
+        return hash(utf8(id));
+      }
+      hash = (hash ^ c) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static long hash(byte[] bytes) {
+    long hash = FNV_OFFSET;
+    for (int i = 0; i < bytes.length; i++) {
+      hash = (hash ^ (bytes[i] & 0xff)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static byte[] utf8(String id) {
+    try {
+      return id.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Evaluation counts of all AnnotationEvaluator replicas reporting to the same output file. <br>
+ * Every replica adds to its own pair of batch and collection counters, obtained once with
+ * {@link #newCounts()}, so replicas never wait on each other; their counters are only merged when
+ * a report is written. The counters belong to the replica rather than to the calling thread, so a
+ * runner handing each CAS to a new thread does not add a pair of counters per CAS. <br>
+ * Each replica ends its batches on its own, so {@link #endBatch(Counts)} sets the counts of a
+ * replica's k-th batch aside, and batch k is complete once every replica still open has ended
+ * it. A replica leaving ends the batch it has started, and no longer holds back the others, so
+ * the batches it completes are reported, the last partial one included, before the collection.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class SharedEvaluation {
+  private static final Map<File, SharedEvaluation> OPEN = new HashMap<File, SharedEvaluation>();
+
+  /**
+   * Counters owned by one replica. The owner locks it once per CAS, which is uncontended except
+   * while a report is being merged.
+   */
+  public static class Counts {
+    final EvaluationCounts batch = new EvaluationCounts();
+
+    final EvaluationCounts total = new EvaluationCounts();
+
+    /**
+     * CASes added to the current batch.
+     */
+    int cases;
+
+    /**
+     * Batches ended by the replica, guarded by the SharedEvaluation.
+     */
+    int batches;
+
+    boolean retired;
+  }
+
+  private final File mKey;
+
+  private final List<Counts> mAllCounts = new CopyOnWriteArrayList<Counts>();
+
+  private int mReferences;
+
+  private int mBatchNumber;
+
+  /**
+   * Counts of the batches ended by some replica but not yet reported, by batch number.
+   */
+  private final Map<Integer, EvaluationCounts> mPendingBatches =
+          new HashMap<Integer, EvaluationCounts>();
+
+  private SharedEvaluation(File key) {
+    mKey = key;
+  }
+
+  /**
+   * Get the shared counts of the replicas writing to an output file.
+   *
+   * @param outputFile  the evaluation output file
+   * @return              the shared counts
+   * @throws IOException  if the file name cannot be resolved
+   */
+  public static SharedEvaluation acquire(File outputFile) throws IOException {
+    File key = outputFile.getCanonicalFile();
+    synchronized (OPEN) {
+      SharedEvaluation evaluation = OPEN.get(key);
+      if (evaluation == null) {
+        evaluation = new SharedEvaluation(key);
+        OPEN.put(key, evaluation);
+      }
+      evaluation.mReferences++;
+      return evaluation;
+    }
+  }
+
+  /**
+   * Give up a replica's reference. The batch it has started is ended, and its counters stay in
+   * the collection counts but no longer hold back the end of a batch, so the batches it leaves
+   * complete must then be taken with {@link #nextBatch()}.
+   *
+   * @param counts  the counters of the replica
+   * @return          true for the last replica, which writes the collection report
+   */
+  public boolean release(Counts counts) {
+    synchronized (this) {
+      if (counts.cases > 0) {
+        endBatch(counts);
+      }
+      counts.retired = true;
+    }
+    synchronized (OPEN) {
+      if (--mReferences == 0) {
+        OPEN.remove(mKey);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Create the counters of a replica, merged into every report from now on.
+   *
+   * @return    the counters, to pass to {@link #add(Counts, EvaluationCounts)}
+   */
+  public Counts newCounts() {
+    Counts counts = new Counts();
+    mAllCounts.add(counts);
+    return counts;
+  }
+
+  /**
+   * Add the counts of one CAS to a replica's counters.
+   *
+   * @param counts     the counters of the replica
+   * @param casCounts  the counts of the CAS
+   */
+  public void add(Counts counts, EvaluationCounts casCounts) {
+    synchronized (counts) {
+      counts.batch.add(casCounts);
+      counts.total.add(casCounts);
+      counts.cases++;
+    }
+  }
+
+  /**
+   * End the current batch of a replica, setting its batch counts aside with those of the other
+   * replicas for the same batch.
+   *
+   * @param counts  the counters of the replica
+   */
+  public synchronized void endBatch(Counts counts) {
+    synchronized (counts) {
+      Integer batch = Integer.valueOf(++counts.batches);
+      EvaluationCounts pending = mPendingBatches.get(batch);
+      if (pending == null) {
+        pending = new EvaluationCounts();
+        mPendingBatches.put(batch, pending);
+      }
+      pending.add(counts.batch);
+      counts.batch.clear();
+      counts.cases = 0;
+    }
+  }
+
+  /**
+   * Take the next batch to report, if every replica still open has ended it.
+   *
+   * @return    the counts of batch {@link #getBatchNumber()}, now one more, or null
+   */
+  public synchronized EvaluationCounts nextBatch() {
+    Integer batch = Integer.valueOf(mBatchNumber + 1);
+    if (!mPendingBatches.containsKey(batch)) {
+      return null;
+    }
+    for (Counts counts : mAllCounts) {
+      if (!counts.retired && counts.batches <= mBatchNumber) {
+        return null;
+      }
+    }
+    mBatchNumber++;
+    return mPendingBatches.remove(batch);
+  }
+
+  /**
+   * @return    the number of the last batch taken with {@link #nextBatch()}
+   */
+  public synchronized int getBatchNumber() {
+    return mBatchNumber;
+  }
+
+  /**
+   * Merge the collection counters of all replicas.
+   *
+   * @return    the counts of the collection so far
+   */
+  public EvaluationCounts total() {
+    EvaluationCounts merged = new EvaluationCounts();
+    for (Counts counts : mAllCounts) {
+      synchronized (counts) {
+        merged.add(counts.total);
+      }
+    }
+    return merged;
+  }
+}
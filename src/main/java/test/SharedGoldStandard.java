@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A gold standard index shared by all AnnotationEvaluator replicas scoring against the same file.
+ * <br>
+ * The first replica to acquire a standard file builds its {@link GoldIndex} or
+ * {@link MappedGoldIndex}; the others get the same instance, which is read-only and so serves
+ * every thread without locking. The index is dropped when the last replica releases it.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class SharedGoldStandard implements GoldStandard {
+  private static final Map<String, SharedGoldStandard> OPEN =
+          new HashMap<String, SharedGoldStandard>();
+
+  private final String mKey;
+
+  private final GoldStandard mIndex;
+
+  private int mReferences;
+
+  private SharedGoldStandard(String key, GoldStandard index) {
+    mKey = key;
+    mIndex = index;
+  }
+
+  /**
+   * Get the index of a standard file, building it if no replica holds it yet.
+   *
+   * @param file      the standard file
+   * @param mapped    index the file in place with a {@link MappedGoldIndex}, which reads UTF-8
+   * @param encoding  character encoding of a file read on the heap, or null for the default one
+   * @return            the shared index
+   * @throws IOException  if the file cannot be read or a line is malformed
+   */
+  public static SharedGoldStandard acquire(File file, boolean mapped, String encoding)
+          throws IOException {
+    String key = (mapped ? "mapped:" : "heap:" + encoding + ":") + file.getCanonicalPath();
+    synchronized (OPEN) {
+      SharedGoldStandard gold = OPEN.get(key);
+      if (gold == null) {
+        gold = new SharedGoldStandard(key, mapped ? new MappedGoldIndex(file) : new GoldIndex(
+                file, encoding));
+        OPEN.put(key, gold);
+      }
+      gold.mReferences++;
+      return gold;
+    }
+  }
+
+  /**
+   * Give up a replica's reference. The index is dropped when the last reference goes.
+   */
+  public void release() {
+    synchronized (OPEN) {
+      if (--mReferences == 0) {
+        OPEN.remove(mKey);
+      }
+    }
+  }
+
+  /**
+   * @see test.GoldStandard#size()
+   */
+  public int size() {
+    return mIndex.size();
+  }
+
+  /**
+   * @see test.GoldStandard#count(String)
+   */
+  public int count(String id) {
+    return mIndex.count(id);
+  }
+
+  /**
+   * @see test.GoldStandard#contains(String, int, int)
+   */
+  public boolean contains(String id, int begin, int end) {
+    return mIndex.contains(id, begin, end);
+  }
+}
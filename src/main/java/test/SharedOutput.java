@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An output file written by a single background thread. <br>
+ * CAS consumers format their output into their own buffers and hand the finished text to
+ * {@link #submit(String)}, which only enqueues it. All replicas of a consumer that write to the
+ * same file share one instance, obtained with {@link #acquire(File, Charset, int)} and returned
+ * with {@link #release()}; the file is closed when the last replica releases it. The queue is
+ * bounded, so producers wait when the disk falls behind. <br>
+ * An output acquired with {@link #acquire(File, Charset, int, StageMetrics)} counts the bytes
+ * reaching the file and the flushes in the counters <code>bytesWritten</code> and
+ * <code>flushes</code> of the stage, from the writer thread.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class SharedOutput {
+  private static final int QUEUE_CAPACITY = 256;
+
+  /** Markers compared by identity. */
+  private static final String FLUSH = new String("flush");
+
+  private static final String CLOSE = new String("close");
+
+  private static final Map<File, SharedOutput> OPEN = new HashMap<File, SharedOutput>();
+
+  private final File mFile;
+
+  private final Writer mWriter;
+
+  private final BlockingQueue<String> mQueue = new ArrayBlockingQueue<String>(QUEUE_CAPACITY);
+
+  private final Thread mThread;
+
+  private int mReferences;
+
+  private final AtomicLong mFlushes;
+
+  private volatile IOException mError;
+
+  private SharedOutput(File file, Charset charset, int bufferSize, StageMetrics metrics)
+          throws IOException {
+    mFile = file;
+    OutputStream out = new FileOutputStream(file);
+    if (metrics != null) {
+      out = new CountingOutputStream(out, metrics.counter("bytesWritten"));
+      mFlushes = metrics.counter("flushes");
+    } else {
+      mFlushes = null;
+    }
+    mWriter = new BufferedWriter(new OutputStreamWriter(out, charset), bufferSize);
+    mThread = new Thread(new Runnable() {
+      public void run() {
+        drain();
+      }
+    }, "SharedOutput " + file.getName());
+    mThread.setDaemon(true);
+    mThread.start();
+  }
+
+  /**
+   * Get the shared output of a file, opening (and truncating) it if no replica holds it yet.
+   *
+   * @param file        the output file
+   * @param charset     character encoding of the file
+   * @param bufferSize  size of the output buffer in characters
+   * @return              the shared output
+   * @throws IOException  if the file cannot be opened
+   */
+  public static SharedOutput acquire(File file, Charset charset, int bufferSize)
+          throws IOException {
+    return acquire(file, charset, bufferSize, null);
+  }
+
+  /**
+   * Get the shared output of a file, opening (and truncating) it if no replica holds it yet. The
+   * output counts its writes in the metrics given by the replica that opens it.
+   *
+   * @param file        the output file
+   * @param charset     character encoding of the file
+   * @param bufferSize  size of the output buffer in characters
+   * @param metrics     the metrics of the consumer stage, or null
+   * @return              the shared output
+   * @throws IOException  if the file cannot be opened
+   */
+  public static SharedOutput acquire(File file, Charset charset, int bufferSize,
+          StageMetrics metrics) throws IOException {
+    File key = file.getCanonicalFile();
+    synchronized (OPEN) {
+      SharedOutput output = OPEN.get(key);
+      if (output == null) {
+        output = new SharedOutput(key, charset, bufferSize, metrics);
+        OPEN.put(key, output);
+      }
+      output.mReferences++;
+      return output;
+    }
+  }
+
+  /**
+   * Give up this replica's reference; the last reference flushes and closes the file.
+   *
+   * @throws IOException  if writing or closing the file failed
+   */
+  public void release() throws IOException {
+    boolean last;
+    synchronized (OPEN) {
+      last = --mReferences == 0;
+      if (last) {
+        OPEN.remove(mFile);
+      }
+    }
+    if (last) {
+      enqueue(CLOSE);
+      try {
+        mThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+    checkError();
+  }
+
+  /**
+   * Enqueue text to be written.
+   *
+   * @param text  the text
+   * @throws IOException  if an earlier write failed
+   */
+  public void submit(String text) throws IOException {
+    checkError();
+    if (text.length() > 0) {
+      enqueue(text);
+    }
+  }
+
+  /**
+   * Ask the writer thread to flush everything enqueued so far.
+   *
+   * @throws IOException  if an earlier write failed
+   */
+  public void flush() throws IOException {
+    checkError();
+    enqueue(FLUSH);
+  }
+
+  /**
+   * @return    the file written
+   */
+  public File getFile() {
+    return mFile;
+  }
+
+  private void enqueue(String item) throws IOException {
+    try {
+      mQueue.put(item);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  private void checkError() throws IOException {
+    if (mError != null) {
+      throw mError;
+    }
+  }
+
+  /**
+   * Body of the writer thread. After a failed write the remaining items are discarded, so that
+   * producers are never blocked on a full queue; the error is reported to them instead.
+   */
+  private void drain() {
+    boolean open = true;
+    while (open) {
+      String item;
+      try {
+        item = mQueue.take();
+      } catch (InterruptedException e) {
+        mError = new InterruptedIOException();
+        break;
+      }
+      try {
+        if (item == CLOSE) {
+          open = false;
+        } else if (mError != null) {
+          continue;
+        } else if (item == FLUSH) {
+          mWriter.flush();
+          if (mFlushes != null) {
+            mFlushes.incrementAndGet();
+          }
+        } else {
+          mWriter.write(item);
+        }
+      } catch (IOException e) {
+        mError = e;
+      }
+    }
+    try {
+      mWriter.close();
+    } catch (IOException e) {
+      if (mError == null) {
+        mError = e;
+      }
+    }
+  }
+
+  /**
+   * Stream adding the number of bytes written to a counter.
+   */
+  private static class CountingOutputStream extends FilterOutputStream {
+    private final AtomicLong mCount;
+
+    CountingOutputStream(OutputStream out, AtomicLong count) {
+      super(out);
+      mCount = count;
+    }
+
+    public void write(int b) throws IOException {
+      out.write(b);
+      mCount.incrementAndGet();
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      mCount.addAndGet(len);
+    }
+  }
+}
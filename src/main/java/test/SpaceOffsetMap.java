@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+/**
+ * Prefix count of the spaces in a sentence, used to translate character offsets into the
+ * space-excluding offsets of the output format. <br>
+ * The map is built once per sentence in linear time; every lookup afterwards is constant time.
+ * The backing array is reused between sentences, so an instance must not be shared by threads.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class SpaceOffsetMap {
+  /**
+   * mSpaces[i] is the number of spaces in text[0, i).
+   */
+  private int[] mSpaces = new int[256];
+
+  private int mLength;
+
+  /**
+   * Build the map for a new sentence.
+   *
+   * @param text  the sentence
+   */
+  public void reset(CharSequence text) {
+    reset(text, 0, text.length());
+  }
+
+  /**
+   * Build the map for a sentence held in a region of a larger text, such as the document text of
+   * a CAS, without copying it. Indexes passed to {@link #spacesUpTo(int)} are then relative to
+   * start.
+   *
+   * @param text   the text holding the sentence
+   * @param start  index of the first character of the sentence
+   * @param end    index after the last character of the sentence
+   */
+  public void reset(CharSequence text, int start, int end) {
+    mLength = end - start;
+    if (mSpaces.length < mLength + 1) {
+      mSpaces = new int[Math.max(mLength + 1, mSpaces.length * 2)];
+    }
+    int count = 0;
+    mSpaces[0] = 0;
+    for (int i = 0; i < mLength; i++) {
+      if (text.charAt(start + i) == ' ') {
+        count++;
+      }
+      mSpaces[i + 1] = count;
+    }
+  }
+
+  /**
+   * Count the spaces up to and including the character indexed by sentinel.
+   *
+   * @param sentinel  index of a character in the sentence
+   * @return            the number of spaces in text[0, sentinel]
+   */
+  public int spacesUpTo(int sentinel) {
+    return mSpaces[sentinel + 1];
+  }
+
+  /**
+   * @return    the length of the sentence the map was built for
+   */
+  public int length() {
+    return mLength;
+  }
+}
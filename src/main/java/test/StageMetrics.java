@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+
+/**
+ * Latency distribution and counters of one pipeline stage, shared by all its replicas. <br>
+ * A stage is obtained by name with {@link #get(String)}; the first call registers it as the MBean
+ * <code>hw1:type=StageMetrics,name=&lt;name&gt;</code> of the platform MBean server, whose
+ * attributes are the counters, the number of latencies recorded, and the mean, median, 99th
+ * percentile and maximum latency in microseconds since the start of the run. Counters are created
+ * on first use, so each component records what is meaningful for it. <br>
+ * {@link #startLogging(long, PrintStream)} prints one line per stage at a fixed period, with the
+ * rate and percentiles of the period alone, to watch a live run without attaching a profiler.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class StageMetrics implements DynamicMBean {
+  /**
+   * Domain of the MBean names.
+   */
+  public static final String DOMAIN = "hw1";
+
+  private static final String[] LATENCY_ATTRIBUTES = { "Count", "MeanMicros", "P50Micros",
+      "P99Micros", "MaxMicros" };
+
+  private static final Map<String, StageMetrics> STAGES = new LinkedHashMap<String, StageMetrics>();
+
+  private static Timer sTimer;
+
+  private final String mName;
+
+  private final LatencyHistogram mLatency = new LatencyHistogram();
+
+  private final ConcurrentHashMap<String, AtomicLong> mCounters =
+          new ConcurrentHashMap<String, AtomicLong>();
+
+  /**
+   * State of the periodic log: the snapshot, counters and time of the last line.
+   */
+  private long[] mLastSnapshot;
+
+  private final Map<String, Long> mLastCounters = new LinkedHashMap<String, Long>();
+
+  private long mLastTime;
+
+  private StageMetrics(String name) {
+    mName = name;
+    mLastSnapshot = mLatency.snapshot();
+    mLastTime = System.nanoTime();
+  }
+
+  /**
+   * Get the metrics of a stage, creating and registering them on first use.
+   *
+   * @param name  the stage, named as its CAS processor in the CPE descriptor
+   * @return        the metrics
+   */
+  public static StageMetrics get(String name) {
+    synchronized (STAGES) {
+      StageMetrics stage = STAGES.get(name);
+      if (stage == null) {
+        stage = new StageMetrics(name);
+        STAGES.put(name, stage);
+        try {
+          ManagementFactory.getPlatformMBeanServer().registerMBean(stage, stage.getObjectName());
+        } catch (JMException e) {
+          // metrics stay available to the log without JMX
+        }
+      }
+      return stage;
+    }
+  }
+
+  /**
+   * @return    the metrics of every stage, in creation order
+   */
+  public static List<StageMetrics> all() {
+    synchronized (STAGES) {
+      return new ArrayList<StageMetrics>(STAGES.values());
+    }
+  }
+
+  /**
+   * Reset the metrics of every stage, as after a calibration run.
+   */
+  public static void resetAll() {
+    for (StageMetrics stage : all()) {
+      stage.reset();
+    }
+  }
+
+  /**
+   * Print a line per stage every period, until {@link #stopLogging()}.
+   *
+   * @param periodMillis  the period in milliseconds
+   * @param out           the stream the lines are printed to
+   */
+  public static synchronized void startLogging(long periodMillis, final PrintStream out) {
+    stopLogging();
+    sTimer = new Timer("StageMetrics log", true);
+    sTimer.scheduleAtFixedRate(new TimerTask() {
+      public void run() {
+        for (StageMetrics stage : all()) {
+          out.println(stage.intervalLine());
+        }
+      }
+    }, periodMillis, periodMillis);
+  }
+
+  /**
+   * Stop the periodic log.
+   */
+  public static synchronized void stopLogging() {
+    if (sTimer != null) {
+      sTimer.cancel();
+      sTimer = null;
+    }
+  }
+
+  /**
+   * Set the latencies and counters of the stage back to 0.
+   */
+  public synchronized void reset() {
+    mLatency.reset();
+    for (AtomicLong counter : mCounters.values()) {
+      counter.set(0);
+    }
+    mLastSnapshot = mLatency.snapshot();
+    mLastCounters.clear();
+    mLastTime = System.nanoTime();
+  }
+
+  /**
+   * @return    the name of the MBean of this stage
+   */
+  public ObjectName getObjectName() {
+    try {
+      return new ObjectName(DOMAIN + ":type=StageMetrics,name=" + ObjectName.quote(mName));
+    } catch (JMException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return    the stage name
+   */
+  public String getName() {
+    return mName;
+  }
+
+  /**
+   * Record the latency of one unit of work of the stage.
+   *
+   * @param nanos  the latency
+   */
+  public void recordLatency(long nanos) {
+    mLatency.record(nanos);
+  }
+
+  /**
+   * @param name  a counter of the stage
+   * @return        the counter, created at 0 on first use
+   */
+  public AtomicLong counter(String name) {
+    AtomicLong counter = mCounters.get(name);
+    if (counter == null) {
+      AtomicLong created = new AtomicLong();
+      counter = mCounters.putIfAbsent(name, created);
+      if (counter == null) {
+        counter = created;
+      }
+    }
+    return counter;
+  }
+
+  /**
+   * @return    a summary line of the whole run so far
+   */
+  public String summaryLine() {
+    return line("total", mLatency.snapshot(), currentCounters(), -1);
+  }
+
+  /**
+   * @return    a line of the latencies and counter increments since the last call
+   */
+  synchronized String intervalLine() {
+    long[] snapshot = mLatency.snapshot();
+    long now = System.nanoTime();
+    Map<String, Long> counters = currentCounters();
+    Map<String, Long> increments = new LinkedHashMap<String, Long>();
+    for (Map.Entry<String, Long> e : counters.entrySet()) {
+      Long last = mLastCounters.get(e.getKey());
+      increments.put(e.getKey(), Long.valueOf(e.getValue().longValue()
+              - (last == null ? 0 : last.longValue())));
+    }
+    String line = line("interval", LatencyHistogram.difference(snapshot, mLastSnapshot),
+            increments, now - mLastTime);
+    mLastSnapshot = snapshot;
+    mLastCounters.clear();
+    mLastCounters.putAll(counters);
+    mLastTime = now;
+    return line;
+  }
+
+  private String line(String scope, long[] counts, Map<String, Long> counters, long nanos) {
+    long count = LatencyHistogram.count(counts);
+    StringBuilder line = new StringBuilder(128);
+    line.append("metrics ").append(scope).append(" [").append(mName).append("] count=")
+            .append(count);
+    if (nanos > 0) {
+      line.append(" rate=").append(String.format("%.1f", count * 1e9 / nanos)).append("/s");
+    }
+    line.append(" mean=").append(micros(LatencyHistogram.mean(counts))).append("us");
+    line.append(" p50=").append(micros(LatencyHistogram.percentile(counts, 50))).append("us");
+    line.append(" p99=").append(micros(LatencyHistogram.percentile(counts, 99))).append("us");
+    line.append(" max=").append(micros(LatencyHistogram.max(counts))).append("us");
+    for (Map.Entry<String, Long> e : counters.entrySet()) {
+      line.append(' ').append(e.getKey()).append('=').append(e.getValue());
+    }
+    return line.toString();
+  }
+
+  private Map<String, Long> currentCounters() {
+    Map<String, Long> counters = new LinkedHashMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> e : mCounters.entrySet()) {
+      counters.put(e.getKey(), Long.valueOf(e.getValue().get()));
+    }
+    return counters;
+  }
+
+  private static String micros(double nanos) {
+    return String.format("%.1f", nanos / 1000.0);
+  }
+
+  /**
+   * @see javax.management.DynamicMBean#getAttribute(String)
+   */
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    long[] counts;
+    if ("Count".equals(attribute)) {
+      return Long.valueOf(LatencyHistogram.count(mLatency.snapshot()));
+    } else if ("MeanMicros".equals(attribute)) {
+      counts = mLatency.snapshot();
+      return Double.valueOf(LatencyHistogram.mean(counts) / 1000.0);
+    } else if ("P50Micros".equals(attribute)) {
+      counts = mLatency.snapshot();
+      return Double.valueOf(LatencyHistogram.percentile(counts, 50) / 1000.0);
+    } else if ("P99Micros".equals(attribute)) {
+      counts = mLatency.snapshot();
+      return Double.valueOf(LatencyHistogram.percentile(counts, 99) / 1000.0);
+    } else if ("MaxMicros".equals(attribute)) {
+      counts = mLatency.snapshot();
+      return Double.valueOf(LatencyHistogram.max(counts) / 1000.0);
+    }
+    AtomicLong counter = mCounters.get(attribute);
+    if (counter == null) {
+      throw new AttributeNotFoundException(attribute);
+    }
+    return Long.valueOf(counter.get());
+  }
+
+  /**
+   * @see javax.management.DynamicMBean#getAttributes(String[])
+   */
+  public AttributeList getAttributes(String[] attributes) {
+    AttributeList list = new AttributeList();
+    for (int i = 0; i < attributes.length; i++) {
+      try {
+        list.add(new Attribute(attributes[i], getAttribute(attributes[i])));
+      } catch (AttributeNotFoundException e) {
+        // omitted, as the interface requires
+      }
+    }
+    return list;
+  }
+
+  /**
+   * The attributes are read-only.
+   *
+   * @see javax.management.DynamicMBean#setAttribute(Attribute)
+   */
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+  }
+
+  /**
+   * @see javax.management.DynamicMBean#setAttributes(AttributeList)
+   */
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  /**
+   * @see javax.management.DynamicMBean#invoke(String, Object[], String[])
+   */
+  public Object invoke(String actionName, Object[] params, String[] signature) {
+    throw new UnsupportedOperationException(actionName);
+  }
+
+  /**
+   * Describe the latency attributes and the counters created so far.
+   *
+   * @see javax.management.DynamicMBean#getMBeanInfo()
+   */
+  public MBeanInfo getMBeanInfo() {
+    List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+    attributes.add(new MBeanAttributeInfo("Count", "long", "Latencies recorded", true, false,
+            false));
+    for (int i = 1; i < LATENCY_ATTRIBUTES.length; i++) {
+      attributes.add(new MBeanAttributeInfo(LATENCY_ATTRIBUTES[i], "double",
+              "Latency in microseconds", true, false, false));
+    }
+    for (String counter : mCounters.keySet()) {
+      attributes.add(new MBeanAttributeInfo(counter, "long", "Counter", true, false, false));
+    }
+    return new MBeanInfo(getClass().getName(), "Metrics of the stage " + mName,
+            attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null,
+            new MBeanOperationInfo[0], null);
+  }
+}
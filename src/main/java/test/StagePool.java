@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A pipeline stage run by its own worker threads, each owning one handler, such as a replica of
+ * an analysis engine. <br>
+ * Every worker has a bounded inbox. {@link #put(Object)} hands an item to the shortest inbox and
+ * blocks while that inbox is full, so a stage that falls behind holds back the stages feeding it
+ * instead of letting items pile up. A worker takes from the head of its own inbox; when it is
+ * empty, it steals from the tail of the fullest sibling inbox, so one long item does not hold up
+ * the items queued behind it while other workers are idle. Handled items are put to the next
+ * stage. <br>
+ * When its input is finished and all inboxes are empty, a worker exits; the last worker to exit
+ * finishes the input of the next stage. A handler failure is recorded in the failure shared by
+ * the stages of the pipeline, which stops every stage. <br>
+ * The counters <code>steals</code> and <code>stalls</code>, the number of puts that waited for
+ * room, are kept in the {@link StageMetrics} of the stage.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class StagePool<T> implements Downstream<T> {
+  /**
+   * Work of one worker on an item.
+   */
+  public interface Handler<T> {
+    /**
+     * @param item  the item
+     * @throws Exception  if the item cannot be handled; the pipeline is stopped
+     */
+    void handle(T item) throws Exception;
+  }
+
+  /**
+   * How long a blocked put or an idle worker waits before checking for failure or completion.
+   */
+  private static final long POLL_MILLIS = 10;
+
+  private final String mName;
+
+  private final LinkedBlockingDeque<T>[] mInboxes;
+
+  private final Downstream<T> mNext;
+
+  private final AtomicReference<Throwable> mFailure;
+
+  private final Thread[] mThreads;
+
+  private final AtomicInteger mLiveWorkers;
+
+  private final AtomicLong mSteals;
+
+  private final AtomicLong mStalls;
+
+  private volatile boolean mInputFinished;
+
+  /**
+   * @param name           the stage name, as in the {@link StageMetrics}
+   * @param workers        number of worker threads
+   * @param inboxCapacity  number of items waiting for each worker
+   * @param next           the next stage
+   * @param failure        failure of the pipeline, shared by its stages
+   */
+  public StagePool(String name, int workers, int inboxCapacity, Downstream<T> next,
+          AtomicReference<Throwable> failure) {
+    if (workers <= 0 || inboxCapacity <= 0) {
+      throw new IllegalArgumentException("Stage " + name + " needs at least one worker and "
+              + "one inbox slot: " + workers + "/" + inboxCapacity);
+    }
+    mName = name;
+    mNext = next;
+    mFailure = failure;
+    @SuppressWarnings("unchecked")
+    LinkedBlockingDeque<T>[] inboxes =
+            (LinkedBlockingDeque<T>[]) new LinkedBlockingDeque<?>[workers];
+    for (int i = 0; i < workers; i++) {
+      inboxes[i] = new LinkedBlockingDeque<T>(inboxCapacity);
+    }
+    mInboxes = inboxes;
+    mThreads = new Thread[workers];
+    mLiveWorkers = new AtomicInteger(workers);
+    StageMetrics metrics = StageMetrics.get(name);
+    mSteals = metrics.counter("steals");
+    mStalls = metrics.counter("stalls");
+  }
+
+  /**
+   * Start one worker thread per handler.
+   *
+   * @param handlers  the handlers, one per worker
+   */
+  public void start(List<? extends Handler<T>> handlers) {
+    if (handlers.size() != mThreads.length) {
+      throw new IllegalArgumentException(handlers.size() + " handlers for " + mThreads.length
+              + " workers of stage " + mName);
+    }
+    for (int i = 0; i < mThreads.length; i++) {
+      final int worker = i;
+      final Handler<T> handler = handlers.get(i);
+      mThreads[i] = new Thread(new Runnable() {
+        public void run() {
+          work(worker, handler);
+        }
+      }, mName + " " + i);
+      mThreads[i].setDaemon(true);
+      mThreads[i].start();
+    }
+  }
+
+  /**
+   * Wait for the workers to exit.
+   *
+   * @throws InterruptedException  if interrupted while waiting
+   */
+  public void join() throws InterruptedException {
+    for (int i = 0; i < mThreads.length; i++) {
+      if (mThreads[i] != null) {
+        mThreads[i].join();
+      }
+    }
+  }
+
+  /**
+   * @see test.Downstream#put(Object)
+   */
+  public void put(T item) throws InterruptedException {
+    LinkedBlockingDeque<T> inbox = mInboxes[0];
+    for (int i = 1; i < mInboxes.length; i++) {
+      if (mInboxes[i].size() < inbox.size()) {
+        inbox = mInboxes[i];
+      }
+    }
+    if (inbox.offerLast(item)) {
+      return;
+    }
+    mStalls.incrementAndGet();
+    while (!inbox.offerLast(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+      checkFailure();
+    }
+  }
+
+  /**
+   * @see test.Downstream#finishInput()
+   */
+  public void finishInput() {
+    mInputFinished = true;
+  }
+
+  /**
+   * @return    the stage name
+   */
+  public String getName() {
+    return mName;
+  }
+
+  /**
+   * @return    the number of worker threads
+   */
+  public int getWorkers() {
+    return mThreads.length;
+  }
+
+  private void work(int worker, Handler<T> handler) {
+    LinkedBlockingDeque<T> inbox = mInboxes[worker];
+    try {
+      while (mFailure.get() == null) {
+        T item = inbox.pollFirst();
+        if (item == null) {
+          item = steal(worker);
+        }
+        if (item == null) {
+          // read the flag before the inboxes: nothing is put once it is set
+          if (mInputFinished && isEmpty()) {
+            break;
+          }
+          item = inbox.pollFirst(POLL_MILLIS, TimeUnit.MILLISECONDS);
+          if (item == null) {
+            continue;
+          }
+        }
+        handler.handle(item);
+        mNext.put(item);
+      }
+    } catch (InterruptedException e) {
+      mFailure.compareAndSet(null, e);
+    } catch (Throwable e) {
+      mFailure.compareAndSet(null, e);
+    } finally {
+      if (mLiveWorkers.decrementAndGet() == 0) {
+        mNext.finishInput();
+      }
+    }
+  }
+
+  /**
+   * Take the last item of the fullest other inbox.
+   */
+  private T steal(int worker) {
+    LinkedBlockingDeque<T> fullest = null;
+    for (int i = 0; i < mInboxes.length; i++) {
+      if (i != worker && mInboxes[i].size() > 0
+              && (fullest == null || mInboxes[i].size() > fullest.size())) {
+        fullest = mInboxes[i];
+      }
+    }
+    T item = (fullest == null) ? null : fullest.pollLast();
+    if (item != null) {
+      mSteals.incrementAndGet();
+    }
+    return item;
+  }
+
+  private boolean isEmpty() {
+    for (int i = 0; i < mInboxes.length; i++) {
+      if (!mInboxes[i].isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void checkFailure() throws InterruptedException {
+    if (mFailure.get() != null) {
+      throw new InterruptedException("Pipeline stopped: " + mFailure.get());
+    }
+  }
+}
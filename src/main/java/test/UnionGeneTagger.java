@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+/**
+ * Tagger merging the mentions of two taggers. All mentions of the first are kept, and those of
+ * the second that overlap none of them are added.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class UnionGeneTagger implements GeneTagger {
+  private final GeneTagger mFirst;
+
+  private final GeneTagger mSecond;
+
+  /**
+   * @param first   tagger whose mentions win overlaps
+   * @param second  tagger adding the mentions the first missed
+   */
+  public UnionGeneTagger(GeneTagger first, GeneTagger second) {
+    mFirst = first;
+    mSecond = second;
+  }
+
+  /**
+   * Merge the two sorted span lists.
+   *
+   * @see test.GeneTagger#tag(String)
+   */
+  public int[] tag(String sentence) {
+    int[] first = mFirst.tag(sentence);
+    int[] second = mSecond.tag(sentence);
+    if (second.length == 0) {
+      return first;
+    }
+    if (first.length == 0) {
+      return second;
+    }
+    int[] merged = new int[first.length + second.length];
+    int n = 0;
+    int i = 0;
+    int j = 0;
+    while (i < first.length || j < second.length) {
+      if (j == second.length || (i < first.length && first[i] <= second[j])) {
+        System.arraycopy(first, i, merged, n, STRIDE);
+        i += STRIDE;
+        n += STRIDE;
+        continue;
+      }
+      // keep a mention of the second tagger only if it overlaps neither neighbour of the first
+      boolean overlaps = (i < first.length && first[i] < second[j + 1])
+              || (i > 0 && first[i - STRIDE + 1] > second[j]);
+      if (!overlaps) {
+        System.arraycopy(second, j, merged, n, STRIDE);
+        n += STRIDE;
+      }
+      j += STRIDE;
+    }
+    if (n == merged.length) {
+      return merged;
+    }
+    int[] trimmed = new int[n];
+    System.arraycopy(merged, 0, trimmed, 0, n);
+    return trimmed;
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.XMLInputSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the segment files written by {@link CasSegmentOutput} and read back by
+ * {@link BinaryCasReader}.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class CasSegmentOutputTest {
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private static byte[] record(int n, int length) {
+    byte[] record = new byte[length];
+    for (int i = 0; i < length; i++) {
+      record[i] = (byte) (n + i);
+    }
+    return record;
+  }
+
+  /**
+   * @return    the records of a segment, after checking its magic number
+   */
+  private static List<byte[]> readSegment(File segment) throws IOException {
+    List<byte[]> records = new ArrayList<byte[]>();
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+    try {
+      assertEquals(CasSegmentOutput.MAGIC, in.readInt());
+      while (true) {
+        int length;
+        try {
+          length = in.readInt();
+        } catch (EOFException e) {
+          return records;
+        }
+        byte[] record = new byte[length];
+        in.readFully(record);
+        records.add(record);
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void recordsRollOverToANewSegment() throws IOException {
+    File directory = new File(mFolder.getRoot(), "segments");
+    // 4 bytes of magic then 44 per record: the fourth record starts a new segment
+    CasSegmentOutput output = CasSegmentOutput.acquire(directory, 100);
+    for (int n = 0; n < 7; n++) {
+      output.write(record(n, 40), 40);
+    }
+    assertEquals(7, output.getRecords());
+    output.release();
+
+    int[] perSegment = new int[] { 3, 3, 1 };
+    int n = 0;
+    for (int s = 0; s < perSegment.length; s++) {
+      File segment = new File(directory, CasSegmentOutput.segmentName(s));
+      assertEquals(4 + 44 * perSegment[s], segment.length());
+      List<byte[]> records = readSegment(segment);
+      assertEquals(perSegment[s], records.size());
+      for (byte[] record : records) {
+        assertArrayEquals(record(n++, 40), record);
+      }
+    }
+    assertFalse(new File(directory, CasSegmentOutput.segmentName(3)).exists());
+  }
+
+  @Test
+  public void recordLargerThanASegmentGetsOneToItself() throws IOException {
+    File directory = new File(mFolder.getRoot(), "segments");
+    CasSegmentOutput output = CasSegmentOutput.acquire(directory, 64);
+    output.write(record(0, 10), 10);
+    output.write(record(1, 200), 200);
+    output.write(record(2, 10), 10);
+    output.release();
+    assertEquals(2, readSegment(new File(directory, CasSegmentOutput.segmentName(0))).size());
+    List<byte[]> last = readSegment(new File(directory, CasSegmentOutput.segmentName(1)));
+    assertEquals(1, last.size());
+    assertArrayEquals(record(2, 10), last.get(0));
+  }
+
+  @Test
+  public void replicasShareTheOutputOfADirectory() throws IOException {
+    File directory = new File(mFolder.getRoot(), "segments");
+    assertTrue(directory.mkdirs());
+    File stale = new File(directory, CasSegmentOutput.segmentName(7));
+    assertTrue(stale.createNewFile());
+    CasSegmentOutput first = CasSegmentOutput.acquire(directory, 1024);
+    assertFalse(stale.exists());
+    CasSegmentOutput second = CasSegmentOutput.acquire(directory, 1024);
+    assertSame(first, second);
+    first.write(record(0, 8), 8);
+    first.release();
+    // still open for the second replica
+    second.write(record(1, 8), 8);
+    second.release();
+    assertEquals(2, readSegment(new File(directory, CasSegmentOutput.segmentName(0))).size());
+  }
+
+  @Test
+  public void casesRoundTripThroughTheReader() throws Exception {
+    File directory = new File(mFolder.getRoot(), "segments");
+    CollectionReaderDescription description = UIMAFramework.getXMLParser()
+            .parseCollectionReaderDescription(new XMLInputSource(new File(
+                    "src/main/resources/descriptors/BinaryCasReader.xml")));
+    CAS cas = CasCreationUtils.createCas(description.getCollectionReaderMetaData());
+    String[] texts = new String[] { "P53 binds DNA.", "", "BRCA1 and BRCA2 are genes." };
+    CasSegmentOutput output = CasSegmentOutput.acquire(directory, 200);
+    for (int i = 0; i < texts.length; i++) {
+      cas.reset();
+      cas.setDocumentText(texts[i]);
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      DeflaterOutputStream deflated = new DeflaterOutputStream(buffer);
+      Serialization.serializeCAS(cas, deflated);
+      deflated.finish();
+      output.write(buffer.toByteArray(), buffer.size());
+    }
+    output.release();
+
+    description.getCollectionReaderMetaData().getConfigurationParameterSettings()
+            .setParameterValue(BinaryCasReader.PARAM_INPUTDIR, directory.getPath());
+    CollectionReader reader = UIMAFramework.produceCollectionReader(description);
+    try {
+      for (int i = 0; i < texts.length; i++) {
+        assertTrue(reader.hasNext());
+        cas.reset();
+        reader.getNext(cas);
+        assertEquals(texts[i], cas.getDocumentText());
+      }
+      assertFalse(reader.hasNext());
+    } finally {
+      reader.close();
+      reader.destroy();
+    }
+  }
+}
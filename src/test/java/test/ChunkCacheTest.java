@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests of the eviction order of the {@link ChunkCache} policies.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class ChunkCacheTest {
+  private static final int[] SPANS = new int[] { 0, 3, GeneTagger.CONFIDENCE_SCALE };
+
+  @Test
+  public void lfuEvictsTheLeastFrequentlyUsed() {
+    ChunkCache cache = ChunkCache.create(ChunkCache.LFU, 2);
+    cache.put("a", SPANS);
+    cache.put("b", SPANS);
+    cache.get("a");
+    cache.put("c", SPANS);
+    assertEquals(2, cache.size());
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("a"));
+    assertNotNull(cache.get("c"));
+  }
+
+  @Test
+  public void lfuEvictsANewEntryBeforeAnOlderFrequentOne() {
+    ChunkCache cache = ChunkCache.create(ChunkCache.LFU, 2);
+    cache.put("a", SPANS);
+    cache.get("a");
+    cache.put("b", SPANS);
+    cache.put("c", SPANS);
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("a"));
+    assertNotNull(cache.get("c"));
+  }
+
+  @Test
+  public void lfuBreaksTiesByLeastRecentUse() {
+    ChunkCache cache = ChunkCache.create(ChunkCache.LFU, 3);
+    cache.put("a", SPANS);
+    cache.put("b", SPANS);
+    cache.put("c", SPANS);
+    cache.get("b");
+    cache.get("a");
+    cache.get("c");
+    // all used twice, b first
+    cache.put("d", SPANS);
+    assertNull(cache.get("b"));
+    // a, c and d now used 3, 3 and 2 times: d goes
+    cache.get("a");
+    cache.get("c");
+    cache.put("e", SPANS);
+    assertNull(cache.get("d"));
+    assertNotNull(cache.get("a"));
+    assertNotNull(cache.get("c"));
+    assertNotNull(cache.get("e"));
+  }
+
+  @Test
+  public void lfuPutOfACachedSentenceKeepsItsCount() {
+    ChunkCache cache = ChunkCache.create(ChunkCache.LFU, 2);
+    cache.put("a", SPANS);
+    cache.get("a");
+    cache.put("a", SPANS);
+    cache.put("b", SPANS);
+    cache.put("c", SPANS);
+    assertEquals(2, cache.size());
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("a"));
+  }
+
+  @Test
+  public void lruEvictsTheLeastRecentlyUsed() {
+    ChunkCache cache = ChunkCache.create(ChunkCache.LRU, 2);
+    cache.put("a", SPANS);
+    cache.put("b", SPANS);
+    cache.get("a");
+    cache.put("c", SPANS);
+    assertEquals(2, cache.size());
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("a"));
+    assertNotNull(cache.get("c"));
+  }
+
+  @Test
+  public void countsHitsAndMisses() {
+    ChunkCache cache = ChunkCache.create("lfu", 1);
+    assertNull(cache.get("a"));
+    cache.put("a", SPANS);
+    assertEquals(SPANS, cache.get("a"));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(0.5, cache.getHitRate(), 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsANonPositiveCapacity() {
+    ChunkCache.create(ChunkCache.LRU, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAnUnknownPolicy() {
+    ChunkCache.create("FIFO", 16);
+  }
+}
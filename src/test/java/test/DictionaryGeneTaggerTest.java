@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests of the leftmost-longest, word bounded matching of {@link DictionaryGeneTagger}.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class DictionaryGeneTaggerTest {
+  private static final int C = GeneTagger.CONFIDENCE_SCALE;
+
+  private static DictionaryGeneTagger tagger(String... names) {
+    return new DictionaryGeneTagger(Arrays.asList(names));
+  }
+
+  @Test
+  public void nestedNameKeepsTheLongest() {
+    DictionaryGeneTagger tagger = tagger("p53", "p53 kinase", "kinase");
+    assertArrayEquals(new int[] { 4, 14, C }, tagger.tag("the p53 kinase binds"));
+  }
+
+  @Test
+  public void nestedNameInsideALongerOneIsNotReported() {
+    DictionaryGeneTagger tagger = tagger("protein kinase C", "kinase");
+    assertArrayEquals(new int[] { 0, 16, C }, tagger.tag("protein kinase C is active"));
+  }
+
+  @Test
+  public void longNameContainingShorterNamesIsKeptWhole() {
+    DictionaryGeneTagger tagger = tagger("A", "B", "A B C");
+    assertArrayEquals(new int[] { 0, 5, C }, tagger.tag("A B C"));
+    tagger = tagger("p53", "protein", "p53 protein kinase");
+    assertArrayEquals(new int[] { 4, 22, C }, tagger.tag("the p53 protein kinase is"));
+  }
+
+  @Test
+  public void unfinishedLongNameFallsBackToTheShorterNames() {
+    DictionaryGeneTagger tagger = tagger("p53", "protein", "p53 protein kinase");
+    assertArrayEquals(new int[] { 0, 3, C, 4, 11, C }, tagger.tag("p53 protein is"));
+    assertArrayEquals(new int[] { 0, 3, C, 4, 11, C }, tagger.tag("p53 protein kin"));
+  }
+
+  @Test
+  public void longerNameStartingBeforeAFoundOneReplacesIt() {
+    DictionaryGeneTagger tagger = tagger("B", "A B C");
+    assertArrayEquals(new int[] { 0, 5, C }, tagger.tag("A B C"));
+    assertArrayEquals(new int[] { 2, 3, C }, tagger.tag("A B D"));
+  }
+
+  @Test
+  public void overlappingNamesKeepTheLeftmost() {
+    DictionaryGeneTagger tagger = tagger("A B", "B C");
+    assertArrayEquals(new int[] { 0, 3, C }, tagger.tag("A B C"));
+  }
+
+  @Test
+  public void overlappingLongerNameOnTheRightFallsBackToAShorterOne() {
+    // "B C D" overlaps "A B" but its suffix "C D" starts after it
+    DictionaryGeneTagger tagger = tagger("A B", "B C D", "C D");
+    assertArrayEquals(new int[] { 0, 3, C, 4, 7, C }, tagger.tag("A B C D"));
+  }
+
+  @Test
+  public void adjacentNamesAreBothReported() {
+    DictionaryGeneTagger tagger = tagger("p53", "kinase");
+    assertArrayEquals(new int[] { 0, 3, C, 8, 14, C }, tagger.tag("p53 and kinase"));
+  }
+
+  @Test
+  public void namesMustEndAndStartOnWordBoundaries() {
+    DictionaryGeneTagger tagger = tagger("p5", "BRCA");
+    assertArrayEquals(new int[0], tagger.tag("p53 xBRCA BRCA1"));
+    assertArrayEquals(new int[] { 1, 3, C, 5, 9, C }, tagger.tag("(p5) BRCA."));
+  }
+
+  @Test
+  public void sizeCountsDistinctNonEmptyNames() {
+    assertEquals(2, tagger("p53", "", "kinase", "p53").size());
+    assertArrayEquals(new int[0], tagger().tag("p53"));
+  }
+}
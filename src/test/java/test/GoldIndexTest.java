@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the parsing of the standard file by {@link GoldIndex}.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class GoldIndexTest {
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private File standard(String text, String encoding) throws IOException {
+    File file = mFolder.newFile();
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), encoding);
+    try {
+      writer.write(text);
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+
+  @Test
+  public void indexesMentionsBySentence() throws IOException {
+    GoldIndex index = new GoldIndex(standard("P1|0 2|p53\nP2|4 9|kinase\nP1|6 11|kinase\n",
+            "UTF-8"), "UTF-8");
+    assertEquals(3, index.size());
+    assertEquals(2, index.count("P1"));
+    assertEquals(1, index.count("P2"));
+    assertEquals(0, index.count("P3"));
+    assertTrue(index.contains("P1", 6, 11));
+    assertFalse(index.contains("P2", 6, 11));
+    assertFalse(index.contains("P3", 0, 2));
+  }
+
+  @Test
+  public void duplicateLinesCountOnce() throws IOException {
+    GoldIndex index = new GoldIndex(standard("P1|0 2|p53\nP1|0 2|p53\nP1|4 9|kinase\n"
+            + "P1|0 2|p53\n", "UTF-8"), "UTF-8");
+    assertEquals(2, index.size());
+    assertEquals(2, index.count("P1"));
+    assertTrue(index.contains("P1", 0, 2));
+    assertTrue(index.contains("P1", 4, 9));
+  }
+
+  @Test
+  public void readsTheGivenEncoding() throws IOException {
+    String text = "P\u00e91|0 2|p53\n";
+    GoldIndex latin = new GoldIndex(standard(text, "ISO-8859-1"), "ISO-8859-1");
+    assertTrue(latin.contains("P\u00e91", 0, 2));
+    GoldIndex utf8 = new GoldIndex(standard(text, "UTF-8"), "UTF-8");
+    assertTrue(utf8.contains("P\u00e91", 0, 2));
+  }
+
+  @Test
+  public void blankLinesAreSkipped() throws IOException {
+    GoldIndex index = new GoldIndex(standard("\nP1|0 2|p53\n\n", "UTF-8"), null);
+    assertEquals(1, index.size());
+  }
+
+  @Test(expected = IOException.class)
+  public void malformedLineIsRejected() throws IOException {
+    new GoldIndex(standard("P1|0 2|p53\nP2|0|kinase\n", "UTF-8"), "UTF-8");
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the bucket boundaries and statistics of {@link LatencyHistogram}.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class LatencyHistogramTest {
+  @Test
+  public void valuesBelowSubBucketsHaveTheirOwnBucket() {
+    assertEquals(0, LatencyHistogram.bucket(0));
+    assertEquals(127, LatencyHistogram.bucket(127));
+    assertEquals(127, LatencyHistogram.value(127));
+  }
+
+  @Test
+  public void bucketsDoubleInWidthAtPowersOfTwo() {
+    // [128, 256) in buckets of 2
+    assertEquals(128, LatencyHistogram.bucket(128));
+    assertEquals(128, LatencyHistogram.bucket(129));
+    assertEquals(129, LatencyHistogram.bucket(130));
+    assertEquals(191, LatencyHistogram.bucket(254));
+    assertEquals(191, LatencyHistogram.bucket(255));
+    // [256, 512) in buckets of 4
+    assertEquals(192, LatencyHistogram.bucket(256));
+    assertEquals(192, LatencyHistogram.bucket(259));
+    assertEquals(193, LatencyHistogram.bucket(260));
+  }
+
+  @Test
+  public void valueIsTheMiddleOfTheBucket() {
+    assertEquals(129, LatencyHistogram.value(128));
+    assertEquals(255, LatencyHistogram.value(191));
+    assertEquals(258, LatencyHistogram.value(192));
+  }
+
+  @Test
+  public void bucketsAreMonotonicAndValuesWithinTheirPrecision() {
+    int previous = 0;
+    for (long v = 0; v < (1L << 20); v += 1 + v / 1000) {
+      int bucket = LatencyHistogram.bucket(v);
+      assertTrue(bucket >= previous);
+      previous = bucket;
+      assertTrue(Math.abs(LatencyHistogram.value(bucket) - v) <= v / 64);
+    }
+    int last = LatencyHistogram.bucket(Long.MAX_VALUE);
+    assertEquals(last, LatencyHistogram.bucket(Long.MAX_VALUE - 1));
+    assertTrue(LatencyHistogram.value(last) > Long.MAX_VALUE / 2);
+  }
+
+  @Test
+  public void percentilesOfRecordedLatencies() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    histogram.record(-5);
+    long[] counts = histogram.snapshot();
+    assertEquals(101, LatencyHistogram.count(counts));
+    assertEquals(0, LatencyHistogram.percentile(counts, 0));
+    assertEquals(50, LatencyHistogram.percentile(counts, 50));
+    assertEquals(100, LatencyHistogram.percentile(counts, 100));
+    assertEquals(100, LatencyHistogram.max(counts));
+    assertEquals(5050.0 / 101, LatencyHistogram.mean(counts), 1e-9);
+  }
+
+  @Test
+  public void differenceAndReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(200);
+    long[] before = histogram.snapshot();
+    histogram.record(300);
+    long[] between = LatencyHistogram.difference(histogram.snapshot(), before);
+    assertEquals(1, LatencyHistogram.count(between));
+    assertEquals(302, LatencyHistogram.max(between));
+    histogram.reset();
+    assertEquals(0, LatencyHistogram.count(histogram.snapshot()));
+    assertEquals(0, LatencyHistogram.percentile(histogram.snapshot(), 99));
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the sorted hash index of {@link MappedGoldIndex}, checked against {@link GoldIndex}.
+ *
+ * @author jacky
+ * @version 1.0 14 Oct 2012
+ */
+public class MappedGoldIndexTest {
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private File standard(String text) throws IOException {
+    File file = mFolder.newFile();
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      writer.write(text);
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+
+  @Test
+  public void sentenceKeepsEveryMentionButDuplicatesOnce() throws IOException {
+    File file = standard("P1|0 3|p53\nP2|4 10|kinase\nP1|8 14|kinase\nP1|0 3|p53\n");
+    MappedGoldIndex index = new MappedGoldIndex(file);
+    assertEquals(3, index.size());
+    assertEquals(2, index.count("P1"));
+    assertEquals(1, index.count("P2"));
+    assertEquals(0, index.count("P3"));
+    assertTrue(index.contains("P1", 8, 14));
+    assertTrue(index.contains("P2", 4, 10));
+    assertFalse(index.contains("P2", 8, 14));
+    assertFalse(index.contains("P1", 4, 10));
+  }
+
+  @Test
+  public void idsThatArePrefixesOfOthersDoNotMatch() throws IOException {
+    File file = standard("P1|0 3|p53\nP10|0 3|p53\n");
+    // every hash collides: only the comparison of the IDs tells them apart
+    MappedGoldIndex index = new MappedGoldIndex(file, 0L);
+    assertEquals(1, index.count("P1"));
+    assertEquals(1, index.count("P10"));
+    assertEquals(0, index.count("P"));
+    assertEquals(0, index.count("P100"));
+    assertTrue(index.contains("P10", 0, 3));
+  }
+
+  @Test
+  public void collidingHashesNeverGiveAWrongAnswer() throws IOException {
+    File file = standard("A|0 1|a\nB|2 3|b\nA|4 5|a\n\u00e9|6 7|e\nB|4 5|b\nA|0 1|a\n");
+    MappedGoldIndex index = new MappedGoldIndex(file, 0L);
+    // the repeated A mention is dropped, B at the same offsets is not
+    assertEquals(5, index.size());
+    assertEquals(2, index.count("A"));
+    assertEquals(2, index.count("B"));
+    assertEquals(1, index.count("\u00e9"));
+    assertEquals(0, index.count("C"));
+    assertTrue(index.contains("A", 4, 5));
+    assertTrue(index.contains("B", 4, 5));
+    assertFalse(index.contains("B", 0, 1));
+    assertTrue(index.contains("\u00e9", 6, 7));
+  }
+
+  @Test
+  public void blankLinesAreSkipped() throws IOException {
+    MappedGoldIndex index = new MappedGoldIndex(standard("\nP1|0 3|p53\r\n\r\n"));
+    assertEquals(1, index.size());
+    assertTrue(index.contains("P1", 0, 3));
+  }
+
+  @Test(expected = IOException.class)
+  public void malformedLineIsRejected() throws IOException {
+    new MappedGoldIndex(standard("P1|0 3|p53\nP2|0|kinase\n"));
+  }
+
+  @Test
+  public void agreesWithTheHeapIndex() throws IOException {
+    // enough lines to grow the arrays and to sort by quicksort, with few hash bits and some
+    // mentions listed twice
+    Random random = new Random(42);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      int begin = random.nextInt(100);
+      text.append("S").append(random.nextInt(700)).append('|').append(begin).append(' ')
+              .append(begin + 1 + random.nextInt(10)).append("|gene\n");
+    }
+    File file = standard(text.toString());
+    GoldIndex expected = new GoldIndex(file, "UTF-8");
+    long[] masks = new long[] { -1L, 0xffL, 0x7L };
+    for (long mask : masks) {
+      MappedGoldIndex index = new MappedGoldIndex(file, mask);
+      assertEquals(expected.size(), index.size());
+      for (int id = 0; id < 800; id++) {
+        String sentence = "S" + id;
+        assertEquals(expected.count(sentence), index.count(sentence));
+        for (int begin = 0; begin < 100; begin += 7) {
+          for (int end = begin + 1; end <= begin + 10; end++) {
+            assertEquals(expected.contains(sentence, begin, end),
+                    index.contains(sentence, begin, end));
+          }
+        }
+      }
+    }
+  }
+}